@@ -4,6 +4,7 @@ import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.autoconfigure.domain.EntityScan;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication(scanBasePackages = {
         "com.sky_ecommerce",
@@ -11,6 +12,7 @@ import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
 })
 @EnableJpaRepositories(basePackages = "com.sky_ecommerce")
 @EntityScan(basePackages = "com.sky_ecommerce")
+@EnableScheduling
 public class KafkaConsumerApplication {
     public static void main(String[] args) {
         SpringApplication.run(KafkaConsumerApplication.class, args);
@@ -1,10 +1,10 @@
 package com.sky_ecommerce.cart.domain;
 
+import com.sky_ecommerce.common.UuidV7;
 import jakarta.persistence.*;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.UUID;
 
 @Entity
 @Table(name = "carts", indexes = {
@@ -12,7 +12,7 @@ import java.util.UUID;
 })
 public class Cart {
     @Id
-    private String id = UUID.randomUUID().toString();
+    private String id = UuidV7.next();
 
     @Column(nullable = false, unique = true)
     private String userId;
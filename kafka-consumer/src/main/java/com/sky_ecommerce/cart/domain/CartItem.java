@@ -1,11 +1,11 @@
 package com.sky_ecommerce.cart.domain;
 
 import com.sky_ecommerce.cart.domain.Cart;
+import com.sky_ecommerce.common.UuidV7;
 import jakarta.persistence.*;
 
 import java.math.BigDecimal;
 import java.time.Instant;
-import java.util.UUID;
 
 @Entity
 @Table(name = "cart_items", indexes = {
@@ -15,7 +15,7 @@ import java.util.UUID;
 public class CartItem {
 
     @Id
-    private String id = UUID.randomUUID().toString();
+    private String id = UuidV7.next();
 
     @ManyToOne(fetch = FetchType.LAZY, optional = false)
     @JoinColumn(name = "cart_id", nullable = false)
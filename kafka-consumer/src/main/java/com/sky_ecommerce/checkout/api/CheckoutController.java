@@ -2,6 +2,7 @@ package com.sky_ecommerce.checkout.api;
 
 import com.sky_ecommerce.cart.domain.Cart;
 import com.sky_ecommerce.cart.service.CartService;
+import com.sky_ecommerce.common.UuidV7;
 import com.sky_ecommerce.order.domain.Order;
 import com.sky_ecommerce.order.domain.OrderRepository;
 import jakarta.persistence.EntityNotFoundException;
@@ -54,7 +55,7 @@ public class CheckoutController {
 
         // Build an Order entity from existing domain (minimal fields)
         Order order = new Order();
-        order.setId(UUID.randomUUID().toString());
+        order.setId(UuidV7.next());
         order.setCustomerId(userId);
         order.setStatus(Order.Status.PENDING);
         order.setTotal(total);
@@ -0,0 +1,26 @@
+package com.sky_ecommerce.common;
+
+import jakarta.persistence.MappedSuperclass;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.Transient;
+import org.springframework.data.domain.Persistable;
+
+/**
+ * Base for entities whose ids we assign ourselves (envelope ids, order ids). Spring Data cannot tell such
+ * an entity is new from its id, so it would merge on save(), which SELECTs the row first. Tracking
+ * newness here makes save() persist instead: a plain INSERT that Hibernate can batch.
+ */
+@MappedSuperclass
+public abstract class AssignedIdEntity implements Persistable<String> {
+
+    @Transient
+    private boolean isNew = true;
+
+    @Override
+    public boolean isNew() { return isNew; }
+
+    @PostLoad
+    @PostPersist
+    protected void markNotNew() { this.isNew = false; }
+}
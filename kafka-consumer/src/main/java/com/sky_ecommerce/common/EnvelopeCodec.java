@@ -0,0 +1,218 @@
+package com.sky_ecommerce.common;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.cbor.CBORGenerator;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Encodes envelopes in the format configured for their topic and decodes any supported format.
+ * Formats are chosen per topic ({@code envelope.format.topics}, e.g. {@code order.events=CBOR}) with
+ * {@code envelope.format.default} for the rest, so topics can move off JSON one at a time.
+ */
+@Component
+public class EnvelopeCodec {
+
+    private final Map<EnvelopeFormat, ObjectMapper> mappers = new EnumMap<>(EnvelopeFormat.class);
+    private final Map<String, EnvelopeFormat> topicFormats = new HashMap<>();
+    private final EnvelopeFormat defaultFormat;
+    private final EventTypeRegistry eventTypes;
+    private final EventUpcasterChain upcasters;
+
+    public EnvelopeCodec(ObjectMapper objectMapper,
+                         EventTypeRegistry eventTypes,
+                         EventUpcasterChain upcasters,
+                         @Value("${envelope.format.default:JSON}") EnvelopeFormat defaultFormat,
+                         @Value("${envelope.format.topics:}") String topicFormats) {
+        this.defaultFormat = defaultFormat;
+        this.eventTypes = eventTypes;
+        this.upcasters = upcasters;
+        mappers.put(EnvelopeFormat.JSON, objectMapper);
+        // binary mappers are copies of the JSON mapper (same modules and features) over a binary factory
+        mappers.put(EnvelopeFormat.CBOR, objectMapper.copyWith(CBORFactory.builder()
+                .enable(CBORGenerator.Feature.WRITE_TYPE_HEADER)
+                .build()));
+        mappers.put(EnvelopeFormat.SMILE, objectMapper.copyWith(SmileFactory.builder()
+                .enable(SmileGenerator.Feature.WRITE_HEADER)
+                .build()));
+        for (String entry : topicFormats.split(",")) {
+            int eq = entry.indexOf('=');
+            if (eq > 0) {
+                this.topicFormats.put(entry.substring(0, eq).trim(),
+                        EnvelopeFormat.valueOf(entry.substring(eq + 1).trim().toUpperCase()));
+            }
+        }
+    }
+
+    public EnvelopeFormat formatFor(String topic) {
+        return topicFormats.getOrDefault(topic, defaultFormat);
+    }
+
+    public byte[] encode(String topic, Object envelope) {
+        try {
+            return mappers.get(formatFor(topic)).writeValueAsBytes(envelope);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to encode envelope for " + topic, e);
+        }
+    }
+
+    public <T> T decode(byte[] data, Class<T> type) {
+        ObjectMapper mapper = mappers.get(EnvelopeFormat.detect(data));
+        return decode(mapper, data, mapper.constructType(type));
+    }
+
+    public <T> T decode(byte[] data, JavaType type) {
+        return decode(mappers.get(EnvelopeFormat.detect(data)), data, type);
+    }
+
+    /**
+     * Streams the envelope fields and binds the payload directly into the class registered for its
+     * eventType, without building an intermediate Map tree. Envelopes are written with eventType and
+     * schemaVersion ahead of the payload; if a producer ordered them differently the payload tokens are
+     * buffered until both are known. Payloads of an older schemaVersion are upcast first.
+     */
+    public EventEnvelope<Object> decodeTyped(byte[] data) {
+        ObjectMapper mapper = mappers.get(EnvelopeFormat.detect(data));
+        try (JsonParser p = mapper.createParser(data)) {
+            if (p.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Envelope is not an object");
+            }
+            EventEnvelope<Object> env = new EventEnvelope<>();
+            TokenBuffer deferredPayload = null;
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String field = p.currentName();
+                p.nextToken();
+                if (!"payload".equals(field)) {
+                    readMetadata(mapper, p, field, env);
+                } else if (env.getEventType() != null && env.getSchemaVersion() != null) {
+                    env.setPayload(readPayload(mapper, p, env));
+                } else {
+                    deferredPayload = new TokenBuffer(p);
+                    deferredPayload.copyCurrentStructure(p);
+                }
+            }
+            if (deferredPayload != null) {
+                try (JsonParser payload = deferredPayload.asParser(mapper)) {
+                    env.setPayload(readPayload(mapper, payload, env));
+                }
+            }
+            return env;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to decode envelope", e);
+        }
+    }
+
+    /**
+     * Parses only the envelope metadata and leaves the payload undecoded: the returned envelope keeps the
+     * record bytes and binds the payload on its first {@link LazyEventEnvelope#getPayload()} call, so
+     * consumers that route or log on metadata never pay for the payload.
+     */
+    public LazyEventEnvelope<Object> decodeLazy(byte[] data) {
+        EnvelopeFormat format = EnvelopeFormat.detect(data);
+        ObjectMapper mapper = mappers.get(format);
+        try (JsonParser p = mapper.createParser(data)) {
+            if (p.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Envelope is not an object");
+            }
+            LazyEventEnvelope<Object> env = new LazyEventEnvelope<>(this, data, format);
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String field = p.currentName();
+                JsonToken value = p.nextToken();
+                if (!"payload".equals(field)) {
+                    readMetadata(mapper, p, field, env);
+                } else if (value.isStructStart()) {
+                    // remember where the payload sits and step over it without binding anything
+                    long start = p.currentTokenLocation().getByteOffset();
+                    p.skipChildren();
+                    long end = p.currentLocation().getByteOffset();
+                    env.payloadAt((int) start, (int) (end - start));
+                } else {
+                    env.payloadDecoded(value == JsonToken.VALUE_NULL ? null : mapper.readValue(p, Object.class));
+                }
+            }
+            env.markUnmodified();
+            return env;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to decode envelope", e);
+        }
+    }
+
+    // Binds the payload of a lazily decoded envelope, from its byte slice where the format allows
+    // and otherwise by re-scanning the record up to the payload field
+    Object decodePayload(LazyEventEnvelope<?> env, int offset, int length) {
+        byte[] data = env.rawValue();
+        ObjectMapper mapper = mappers.get(env.format());
+        try {
+            if (env.format().isSliceable()) {
+                try (JsonParser p = mapper.createParser(data, offset, length)) {
+                    p.nextToken();
+                    return readPayload(mapper, p, env);
+                }
+            }
+            try (JsonParser p = mapper.createParser(data)) {
+                p.nextToken();
+                while (p.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = p.currentName();
+                    p.nextToken();
+                    if ("payload".equals(field)) {
+                        return readPayload(mapper, p, env);
+                    }
+                    p.skipChildren();
+                }
+                return null;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to decode envelope payload", e);
+        }
+    }
+
+    // Binds the payload at the parser's current token to the registered class. Older schema versions
+    // go through the upcaster chain as a tree first, and the envelope then reports the current version.
+    private Object readPayload(ObjectMapper mapper, JsonParser p, EventEnvelope<?> env) throws IOException {
+        Class<?> type = eventTypes.payloadType(env.getEventType());
+        if (!upcasters.needsUpcast(env.getEventType(), env.getSchemaVersion())) {
+            return mapper.readValue(p, type);
+        }
+        JsonNode upcast = upcasters.upcast(env.getEventType(), env.getSchemaVersion(), mapper.readTree(p));
+        env.setSchemaVersion(eventTypes.currentVersion(env.getEventType()));
+        return mapper.treeToValue(upcast, type);
+    }
+
+    // Sets one envelope metadata field from the current value token; unknown fields are skipped
+    private static void readMetadata(ObjectMapper mapper, JsonParser p, String field, EventEnvelope<?> env)
+            throws IOException {
+        switch (field) {
+            case "id" -> env.setId(p.getValueAsString());
+            case "schemaVersion" -> env.setSchemaVersion(p.currentToken() == JsonToken.VALUE_NULL ? null : p.getValueAsInt());
+            case "eventType" -> env.setEventType(p.getValueAsString());
+            case "subjectId" -> env.setSubjectId(p.getValueAsString());
+            case "occurredAt" -> env.setOccurredAt(mapper.readValue(p, Instant.class));
+            case "correlationId" -> env.setCorrelationId(p.getValueAsString());
+            case "source" -> env.setSource(p.getValueAsString());
+            default -> p.skipChildren();
+        }
+    }
+
+    private static <T> T decode(ObjectMapper mapper, byte[] data, JavaType type) {
+        try {
+            return mapper.readValue(data, type);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to decode envelope", e);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.sky_ecommerce.common;
+
+/**
+ * Wire format of an {@link EventEnvelope} record value. Binary formats carry a leading marker
+ * (the Smile header, the CBOR self-describe tag) so readers can tell them apart from JSON;
+ * consumers therefore accept every format regardless of what a topic is configured to produce.
+ */
+public enum EnvelopeFormat {
+
+    JSON(true),
+    CBOR(true),
+    // Smile back-references field names seen earlier in the document, so a payload cut out of
+    // the record cannot be parsed on its own
+    SMILE(false);
+
+    private static final byte[] SMILE_HEADER = {':', ')', '\n'};
+    private static final byte[] CBOR_SELF_DESCRIBE = {(byte) 0xD9, (byte) 0xD9, (byte) 0xF7};
+
+    private final boolean sliceable;
+
+    EnvelopeFormat(boolean sliceable) {
+        this.sliceable = sliceable;
+    }
+
+    // whether a nested value's byte range can be decoded without the rest of the document
+    public boolean isSliceable() {
+        return sliceable;
+    }
+
+    // Anything without a binary marker is JSON, which keeps pre-rollout records readable
+    public static EnvelopeFormat detect(byte[] data) {
+        if (startsWith(data, SMILE_HEADER)) {
+            return SMILE;
+        }
+        if (startsWith(data, CBOR_SELF_DESCRIBE)) {
+            return CBOR;
+        }
+        return JSON;
+    }
+
+    private static boolean startsWith(byte[] data, byte[] prefix) {
+        if (data == null || data.length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (data[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
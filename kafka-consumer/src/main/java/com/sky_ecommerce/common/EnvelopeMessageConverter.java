@@ -0,0 +1,36 @@
+package com.sky_ecommerce.common;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.kafka.support.converter.ConversionException;
+import org.springframework.kafka.support.converter.MessagingMessageConverter;
+
+import java.lang.reflect.Type;
+
+/**
+ * Decodes raw record values into {@link EventEnvelope}s only when a listener is actually invoked.
+ * Records arrive as bytes and the format (JSON, CBOR, Smile) is detected per record. Anything a
+ * {@link EventTypeFilter} discards is never parsed. Listeners get a {@link LazyEventEnvelope}: the
+ * payload is bound on first access, as its registered POJO ({@link EventTypeRegistry}) or else a Map.
+ */
+public class EnvelopeMessageConverter extends MessagingMessageConverter {
+
+    private final EnvelopeCodec codec;
+
+    public EnvelopeMessageConverter(EnvelopeCodec codec) {
+        this.codec = codec;
+    }
+
+    @Override
+    protected Object extractAndConvertValue(ConsumerRecord<?, ?> record, Type type) {
+        if (!(record.value() instanceof byte[] data)) {
+            return super.extractAndConvertValue(record, type);
+        }
+        try {
+            return codec.decodeLazy(data);
+        } catch (RuntimeException e) {
+            // not retryable: the default error handler sends it straight to the DLT
+            throw new ConversionException("Cannot read envelope from " + record.topic() + "-" + record.partition()
+                    + "@" + record.offset(), record, e);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.sky_ecommerce.common;
+
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Serializer;
+
+/**
+ * Kafka value serializer writing envelopes in their topic's {@link EnvelopeFormat}, plus the
+ * {@link EventHeaders} consumers filter on.
+ */
+public class EnvelopeSerializer implements Serializer<EventEnvelope<?>> {
+
+    private final EnvelopeCodec codec;
+
+    public EnvelopeSerializer(EnvelopeCodec codec) {
+        this.codec = codec;
+    }
+
+    @Override
+    public byte[] serialize(String topic, EventEnvelope<?> data) {
+        if (data == null) {
+            return null;
+        }
+        // a consumed envelope forwarded untouched goes out byte-for-byte as it came in
+        if (data instanceof LazyEventEnvelope<?> lazy && lazy.unmodified() && lazy.format() == codec.formatFor(topic)) {
+            return lazy.rawValue();
+        }
+        return codec.encode(topic, data);
+    }
+
+    @Override
+    public byte[] serialize(String topic, Headers headers, EventEnvelope<?> data) {
+        if (data != null) {
+            EventHeaders.write(headers, data);
+        }
+        return serialize(topic, data);
+    }
+}
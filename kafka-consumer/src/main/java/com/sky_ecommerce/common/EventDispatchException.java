@@ -0,0 +1,21 @@
+package com.sky_ecommerce.common;
+
+import java.util.List;
+
+/**
+ * Thrown by a fan-out dispatcher when some of a record's handlers failed. Carries their names so the
+ * record can be re-delivered to those handlers only.
+ */
+public class EventDispatchException extends RuntimeException {
+
+    private final List<String> handlers;
+
+    public EventDispatchException(List<String> handlers, Throwable cause) {
+        super("Event handlers failed: " + String.join(",", handlers), cause);
+        this.handlers = List.copyOf(handlers);
+    }
+
+    public List<String> getHandlers() {
+        return handlers;
+    }
+}
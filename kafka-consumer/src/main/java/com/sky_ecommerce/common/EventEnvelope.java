@@ -1,8 +1,12 @@
 package com.sky_ecommerce.common;
 
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
 import java.time.Instant;
 import java.util.Objects;
 
+// payload last: consumers know the eventType (and so the payload class) before reaching it
+@JsonPropertyOrder({"id", "schemaVersion", "eventType", "subjectId", "occurredAt", "correlationId", "source", "payload"})
 public class EventEnvelope<T> {
     private String id;
     private Integer schemaVersion;
@@ -3,7 +3,6 @@ package com.sky_ecommerce.common;
 import org.springframework.stereotype.Component;
 
 import java.time.Instant;
-import java.util.UUID;
 
 @Component
 public class EventEnvelopeFactory {
@@ -15,12 +14,12 @@ public class EventEnvelopeFactory {
                                        int schemaVersion,
                                        T payload) {
         EventEnvelope<T> env = new EventEnvelope<>();
-        env.setId(UUID.randomUUID().toString());
+        env.setId(UuidV7.next());
         env.setSchemaVersion(schemaVersion);
         env.setEventType(eventType);
         env.setSubjectId(subjectId);
         env.setOccurredAt(Instant.now());
-        env.setCorrelationId(correlationId != null ? correlationId : UUID.randomUUID().toString());
+        env.setCorrelationId(correlationId != null ? correlationId : UuidV7.next());
         env.setSource(source);
         env.setPayload(payload);
         return env;
@@ -0,0 +1,51 @@
+package com.sky_ecommerce.common;
+
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Kafka record headers mirroring envelope metadata. Consumers read them to route or skip records
+ * without decoding the value.
+ */
+public final class EventHeaders {
+
+    public static final String EVENT_TYPE = "eventType";
+    public static final String SCHEMA_VERSION = "schemaVersion";
+    public static final String CORRELATION_ID = "correlationId";
+    // Set on dead-lettered (and retried) dispatcher records: comma-separated handlers that still need them
+    public static final String DISPATCH_HANDLERS = "dispatchHandlers";
+    // Set on records re-published to a retry topic (see RetryTopics): retries made so far, when the
+    // record is due (epoch millis) and the consumer group it failed in
+    public static final String RETRY_ATTEMPT = "retryAttempt";
+    public static final String RETRY_DUE_AT = "retryDueAt";
+    public static final String RETRY_GROUP = "retryGroup";
+
+    private EventHeaders() {
+        // constants holder
+    }
+
+    public static void write(Headers headers, EventEnvelope<?> envelope) {
+        write(headers, envelope.getEventType(), envelope.getSchemaVersion(), envelope.getCorrelationId());
+    }
+
+    // null values are left out rather than written as empty headers
+    public static void write(Headers headers, String eventType, Integer schemaVersion, String correlationId) {
+        put(headers, EVENT_TYPE, eventType);
+        put(headers, SCHEMA_VERSION, schemaVersion == null ? null : schemaVersion.toString());
+        put(headers, CORRELATION_ID, correlationId);
+    }
+
+    public static String read(Headers headers, String name) {
+        Header header = headers.lastHeader(name);
+        return header == null || header.value() == null ? null : new String(header.value(), StandardCharsets.UTF_8);
+    }
+
+    private static void put(Headers headers, String name, String value) {
+        if (value != null) {
+            headers.remove(name);
+            headers.add(name, value.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
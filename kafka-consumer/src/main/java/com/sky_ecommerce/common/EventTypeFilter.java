@@ -0,0 +1,26 @@
+package com.sky_ecommerce.common;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.kafka.listener.adapter.RecordFilterStrategy;
+
+import java.util.Set;
+
+/**
+ * Discards records whose {@link EventHeaders#EVENT_TYPE} header is not one the listener handles,
+ * before the value is decoded. Records without the header (produced before headers were written)
+ * are passed through, and the listener checks the decoded eventType itself.
+ */
+public class EventTypeFilter implements RecordFilterStrategy<String, byte[]> {
+
+    private final Set<String> eventTypes;
+
+    public EventTypeFilter(String... eventTypes) {
+        this.eventTypes = Set.of(eventTypes);
+    }
+
+    @Override
+    public boolean filter(ConsumerRecord<String, byte[]> record) {
+        String eventType = EventHeaders.read(record.headers(), EventHeaders.EVENT_TYPE);
+        return eventType != null && !eventTypes.contains(eventType);
+    }
+}
@@ -0,0 +1,39 @@
+package com.sky_ecommerce.common;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps envelope eventType values to their payload classes and current schema versions, so consumers
+ * bind payloads straight into typed POJOs. Unregistered types (e.g. ad-hoc events from the publish API)
+ * fall back to a Map and are never upcast.
+ */
+public class EventTypeRegistry {
+
+    private final Map<String, Class<?>> payloadTypes = new ConcurrentHashMap<>();
+    private final Map<String, Integer> currentVersions = new ConcurrentHashMap<>();
+
+    public EventTypeRegistry register(String eventType, Class<?> payloadType) {
+        return register(eventType, payloadType, 1);
+    }
+
+    public EventTypeRegistry register(String eventType, Class<?> payloadType, int currentVersion) {
+        payloadTypes.put(eventType, payloadType);
+        currentVersions.put(eventType, currentVersion);
+        return this;
+    }
+
+    public Class<?> payloadType(String eventType) {
+        return eventType == null ? LinkedHashMap.class : payloadTypes.getOrDefault(eventType, LinkedHashMap.class);
+    }
+
+    public boolean isRegistered(String eventType) {
+        return eventType != null && payloadTypes.containsKey(eventType);
+    }
+
+    // null for unregistered types
+    public Integer currentVersion(String eventType) {
+        return eventType == null ? null : currentVersions.get(eventType);
+    }
+}
@@ -0,0 +1,18 @@
+package com.sky_ecommerce.common;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Rewrites one event type's payload from {@link #fromVersion()} to the next version. Declare
+ * implementations as beans; {@link EventUpcasterChain} strings them together so records of any older
+ * version bind to the current payload class.
+ */
+public interface EventUpcaster {
+
+    String eventType();
+
+    int fromVersion();
+
+    // May modify and return the given node or build a new one
+    JsonNode upcast(JsonNode payload);
+}
@@ -0,0 +1,62 @@
+package com.sky_ecommerce.common;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
+
+/**
+ * Upgrades old payload versions to the version registered in {@link EventTypeRegistry} at decode time.
+ * The composed function for each (eventType, fromVersion) is built on first use and cached, so replaying
+ * a topic full of old records costs one map lookup plus the upcasts themselves per record.
+ */
+@Component
+public class EventUpcasterChain {
+
+    private final EventTypeRegistry eventTypes;
+    private final Map<String, EventUpcaster> steps = new HashMap<>();
+    private final Map<String, UnaryOperator<JsonNode>> chains = new ConcurrentHashMap<>();
+
+    public EventUpcasterChain(EventTypeRegistry eventTypes, ObjectProvider<EventUpcaster> upcasters) {
+        this.eventTypes = eventTypes;
+        for (EventUpcaster upcaster : (Iterable<EventUpcaster>) upcasters.orderedStream()::iterator) {
+            EventUpcaster previous = steps.put(key(upcaster.eventType(), upcaster.fromVersion()), upcaster);
+            if (previous != null) {
+                throw new IllegalStateException("Duplicate upcaster for " + upcaster.eventType()
+                        + " v" + upcaster.fromVersion());
+            }
+        }
+    }
+
+    // Records without a version, and unregistered types, are taken as they are
+    public boolean needsUpcast(String eventType, Integer schemaVersion) {
+        Integer current = eventTypes.currentVersion(eventType);
+        return current != null && schemaVersion != null && schemaVersion < current;
+    }
+
+    public JsonNode upcast(String eventType, int fromVersion, JsonNode payload) {
+        return chains.computeIfAbsent(key(eventType, fromVersion), k -> compose(eventType, fromVersion)).apply(payload);
+    }
+
+    private UnaryOperator<JsonNode> compose(String eventType, int fromVersion) {
+        int current = eventTypes.currentVersion(eventType);
+        UnaryOperator<JsonNode> chain = UnaryOperator.identity();
+        for (int v = fromVersion; v < current; v++) {
+            EventUpcaster step = steps.get(key(eventType, v));
+            if (step == null) {
+                throw new IllegalStateException("No upcaster for " + eventType + " v" + v + " -> v" + (v + 1));
+            }
+            UnaryOperator<JsonNode> before = chain;
+            chain = node -> step.upcast(before.apply(node));
+        }
+        return chain;
+    }
+
+    private static String key(String eventType, int version) {
+        return eventType + '#' + version;
+    }
+}
@@ -0,0 +1,195 @@
+package com.sky_ecommerce.common;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Runs units of transactional work, optionally coalescing concurrent callers into shared transactions
+ * (group commit). With group commit on, request threads enqueue their work and block; committer threads
+ * run up to {@code group-commit.max-batch} queued units in one transaction, so their inserts go out as
+ * JDBC batches with a single commit. If a shared transaction fails, each unit is re-run in its own
+ * transaction so one bad request cannot fail its neighbours.
+ *
+ * Work must therefore only touch the database (it may run twice) and must not expect to share a
+ * transaction with its caller. If the caller is already inside a transaction the work runs inline.
+ * Work runs on a committer thread: the caller's logging MDC and Spring Security context are carried
+ * over to it, but no other thread-local state is (request attributes, locale context, or any
+ * ThreadLocal of the caller's own).
+ */
+@Component
+public class GroupCommitExecutor {
+
+    private static final Logger log = LoggerFactory.getLogger(GroupCommitExecutor.class);
+
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int maxBatch;
+    private final long maxWaitMicros;
+
+    private final BlockingQueue<Unit<?>> queue = new LinkedBlockingQueue<>();
+    private final List<Thread> committers = new ArrayList<>();
+    private volatile boolean running;
+
+    public GroupCommitExecutor(PlatformTransactionManager transactionManager,
+                               @Value("${group-commit.enabled:false}") boolean enabled,
+                               @Value("${group-commit.max-batch:64}") int maxBatch,
+                               @Value("${group-commit.max-wait-micros:500}") long maxWaitMicros,
+                               @Value("${group-commit.threads:2}") int threads) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.maxBatch = Math.max(1, maxBatch);
+        this.maxWaitMicros = maxWaitMicros;
+
+        if (enabled) {
+            running = true;
+            for (int i = 1; i <= Math.max(1, threads); i++) {
+                Thread t = new Thread(this::commitLoop, "group-commit-" + i);
+                t.setDaemon(true);
+                t.start();
+                committers.add(t);
+            }
+        }
+    }
+
+    public <T> T execute(Supplier<T> work) {
+        if (!enabled || !running || TransactionSynchronizationManager.isActualTransactionActive()) {
+            return transactionTemplate.execute(status -> work.get());
+        }
+        Unit<T> unit = new Unit<>(work);
+        queue.add(unit);
+        try {
+            return unit.result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for group commit", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException re) {
+                throw re;
+            }
+            throw new CompletionException(e.getCause());
+        }
+    }
+
+    public void execute(Runnable work) {
+        execute(() -> {
+            work.run();
+            return null;
+        });
+    }
+
+    private void commitLoop() {
+        List<Unit<?>> group = new ArrayList<>(maxBatch);
+        while (running || !queue.isEmpty()) {
+            try {
+                Unit<?> first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                group.add(first);
+                queue.drainTo(group, maxBatch - 1);
+                if (group.size() < maxBatch && maxWaitMicros > 0) {
+                    // give concurrent callers a brief chance to join this commit
+                    Unit<?> next = queue.poll(maxWaitMicros, TimeUnit.MICROSECONDS);
+                    if (next != null) {
+                        group.add(next);
+                        queue.drainTo(group, maxBatch - group.size());
+                    }
+                }
+                commit(group);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                group.clear();
+            }
+        }
+    }
+
+    private void commit(List<Unit<?>> group) {
+        List<Object> results = new ArrayList<>(group.size());
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                for (Unit<?> unit : group) {
+                    results.add(unit.run());
+                }
+            });
+        } catch (Exception groupFailure) {
+            if (group.size() > 1) {
+                log.debug("Group commit of {} units failed, retrying individually: {}", group.size(), groupFailure.getMessage());
+            }
+            group.forEach(this::commitAlone);
+            return;
+        }
+        for (int i = 0; i < group.size(); i++) {
+            group.get(i).complete(results.get(i));
+        }
+    }
+
+    private <T> void commitAlone(Unit<T> unit) {
+        try {
+            unit.result.complete(transactionTemplate.execute(status -> unit.run()));
+        } catch (Exception e) {
+            unit.result.completeExceptionally(e);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        running = false;
+        for (Thread t : committers) {
+            t.join(10000);
+        }
+    }
+
+    private static final class Unit<T> {
+        final Supplier<T> work;
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        // the caller's context, installed on the committer thread around this unit's work only
+        final Map<String, String> mdc;
+        final SecurityContext security;
+
+        Unit(Supplier<T> work) {
+            this.work = work;
+            this.mdc = MDC.getCopyOfContextMap();
+            this.security = SecurityContextHolder.getContext();
+        }
+
+        T run() {
+            if (mdc != null) {
+                MDC.setContextMap(mdc);
+            }
+            SecurityContextHolder.setContext(security);
+            try {
+                return work.get();
+            } finally {
+                MDC.clear();
+                SecurityContextHolder.clearContext();
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        void complete(Object value) {
+            result.complete((T) value);
+        }
+    }
+}
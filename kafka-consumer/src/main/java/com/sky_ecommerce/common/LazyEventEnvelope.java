@@ -0,0 +1,84 @@
+package com.sky_ecommerce.common;
+
+import java.time.Instant;
+
+/**
+ * Envelope read by {@link EnvelopeCodec#decodeLazy(byte[])}: metadata is parsed up front, the payload
+ * stays in the record bytes until {@link #getPayload()} is first called. While nothing is changed,
+ * {@link EnvelopeSerializer} forwards the original bytes as they are instead of encoding them again.
+ *
+ * Like the consumer record it wraps, an instance belongs to the listener thread handling it.
+ */
+public class LazyEventEnvelope<T> extends EventEnvelope<T> {
+
+    private final EnvelopeCodec codec;
+    private final byte[] raw;
+    private final EnvelopeFormat format;
+    private int payloadOffset = -1;
+    private int payloadLength;
+    private boolean payloadDecoded;
+    private boolean modified;
+
+    LazyEventEnvelope(EnvelopeCodec codec, byte[] raw, EnvelopeFormat format) {
+        this.codec = codec;
+        this.raw = raw;
+        this.format = format;
+    }
+
+    /** The record value this envelope was read from. */
+    public byte[] rawValue() {
+        return raw;
+    }
+
+    public EnvelopeFormat format() {
+        return format;
+    }
+
+    /** True until a setter is called; only then must the envelope be encoded again. */
+    public boolean unmodified() {
+        return !modified;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T getPayload() {
+        if (!payloadDecoded) {
+            super.setPayload(payloadOffset < 0 ? null
+                    : (T) codec.decodePayload(this, payloadOffset, payloadLength));
+            payloadDecoded = true;
+        }
+        return super.getPayload();
+    }
+
+    void payloadAt(int offset, int length) {
+        this.payloadOffset = offset;
+        this.payloadLength = length;
+    }
+
+    @SuppressWarnings("unchecked")
+    void payloadDecoded(Object payload) {
+        super.setPayload((T) payload);
+        this.payloadDecoded = true;
+    }
+
+    void markUnmodified() {
+        this.modified = false;
+    }
+
+    @Override
+    public void setId(String id) { modified = true; super.setId(id); }
+    @Override
+    public void setSchemaVersion(Integer schemaVersion) { modified = true; super.setSchemaVersion(schemaVersion); }
+    @Override
+    public void setEventType(String eventType) { modified = true; super.setEventType(eventType); }
+    @Override
+    public void setSubjectId(String subjectId) { modified = true; super.setSubjectId(subjectId); }
+    @Override
+    public void setOccurredAt(Instant occurredAt) { modified = true; super.setOccurredAt(occurredAt); }
+    @Override
+    public void setCorrelationId(String correlationId) { modified = true; super.setCorrelationId(correlationId); }
+    @Override
+    public void setSource(String source) { modified = true; super.setSource(source); }
+    @Override
+    public void setPayload(T payload) { modified = true; payloadDecoded = true; super.setPayload(payload); }
+}
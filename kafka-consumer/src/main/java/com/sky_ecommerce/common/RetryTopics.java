@@ -0,0 +1,38 @@
+package com.sky_ecommerce.common;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Non-blocking retry stages. A failed record is re-published to {@code <topic>.retry-1s}, then
+ * {@code .retry-10s}, then {@code .retry-60s}, and finally to {@code <topic>.DLT}; each stage is
+ * consumed only once its delay has passed, so the source partition never waits on a failing record.
+ */
+public final class RetryTopics {
+
+    public static final List<Duration> DELAYS = List.of(Duration.ofSeconds(1), Duration.ofSeconds(10), Duration.ofSeconds(60));
+    public static final String DLT_SUFFIX = ".DLT";
+
+    private RetryTopics() {
+        // constants holder
+    }
+
+    /** Topic for the given retry attempt (0-based), or the DLT once the stages are used up. */
+    public static String next(String topic, int attempt) {
+        String base = baseTopic(topic);
+        return attempt < DELAYS.size() ? base + suffix(DELAYS.get(attempt)) : base + DLT_SUFFIX;
+    }
+
+    public static String retryTopic(String topic, Duration delay) {
+        return baseTopic(topic) + suffix(delay);
+    }
+
+    // order.events.retry-10s -> order.events
+    public static String baseTopic(String topic) {
+        return topic.replaceFirst("\\.retry-\\d+s$", "");
+    }
+
+    private static String suffix(Duration delay) {
+        return ".retry-" + delay.toSeconds() + "s";
+    }
+}
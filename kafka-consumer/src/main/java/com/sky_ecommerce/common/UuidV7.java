@@ -0,0 +1,53 @@
+package com.sky_ecommerce.common;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Time-ordered UUIDs (RFC 9562 version 7) for primary keys and event ids. The leading 48 bits are the
+ * Unix time in milliseconds, so new keys append to the right edge of B-tree indexes instead of landing
+ * on random pages like v4 ids. Their canonical strings sort in the same order as the UUIDs.
+ *
+ * The 12 rand_a bits hold a counter within the millisecond, so ids from this JVM are strictly increasing.
+ * The clock state is one CAS on a shared AtomicLong, with no lock. The 62 random bits come from
+ * ThreadLocalRandom, so callers on different threads share no random state.
+ */
+public final class UuidV7 {
+
+    private static final int COUNTER_BITS = 12;
+
+    // (unix millis << 12) | counter of the last id handed out
+    private static final AtomicLong last = new AtomicLong();
+
+    private UuidV7() {
+        // static generator
+    }
+
+    public static String next() {
+        return nextUuid().toString();
+    }
+
+    public static UUID nextUuid() {
+        long stamp = nextStamp();
+        long msb = (stamp >>> COUNTER_BITS) << 16   // unix_ts_ms
+                | 0x7000L                           // version 7
+                | (stamp & 0xFFFL);                 // rand_a: sequence within the millisecond
+        long lsb = (ThreadLocalRandom.current().nextLong() & 0x3FFF_FFFF_FFFF_FFFFL)
+                | 0x8000_0000_0000_0000L;           // IETF variant
+        return new UUID(msb, lsb);
+    }
+
+    // A counter overflowing 4096 ids in one millisecond borrows from the next millisecond, which keeps
+    // ids increasing; the same applies if the wall clock steps backwards.
+    private static long nextStamp() {
+        long now = System.currentTimeMillis() << COUNTER_BITS;
+        while (true) {
+            long prev = last.get();
+            long next = Math.max(now, prev + 1);
+            if (last.compareAndSet(prev, next)) {
+                return next;
+            }
+        }
+    }
+}
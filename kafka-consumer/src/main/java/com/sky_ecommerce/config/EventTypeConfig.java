@@ -0,0 +1,23 @@
+package com.sky_ecommerce.config;
+
+import com.sky_ecommerce.common.EventTypeRegistry;
+import com.sky_ecommerce.order.service.events.OrderEvents;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Payload classes and current schema versions of the known event types. New domain events are
+ * registered here so that consumers receive them as typed payloads instead of maps; older versions
+ * are upgraded by EventUpcaster beans.
+ */
+@Configuration
+public class EventTypeConfig {
+
+    @Bean
+    public EventTypeRegistry eventTypeRegistry() {
+        return new EventTypeRegistry()
+                .register("OrderCreated", OrderEvents.OrderCreated.class, OrderEvents.SCHEMA_VERSION)
+                .register("OrderPaid", OrderEvents.OrderPaid.class, OrderEvents.SCHEMA_VERSION)
+                .register("OrderCancelled", OrderEvents.OrderCancelled.class, OrderEvents.SCHEMA_VERSION);
+    }
+}
@@ -1,13 +1,30 @@
 package com.sky_ecommerce.config;
 
+import com.sky_ecommerce.common.EnvelopeCodec;
+import com.sky_ecommerce.common.EventDispatchException;
+import com.sky_ecommerce.common.EnvelopeMessageConverter;
+import com.sky_ecommerce.common.EnvelopeSerializer;
 import com.sky_ecommerce.common.EventEnvelope;
+import com.sky_ecommerce.common.EventHeaders;
+import com.sky_ecommerce.common.EventTypeFilter;
+import com.sky_ecommerce.common.RetryTopics;
+import com.sky_ecommerce.listeners.KeyOrderedBatchProcessor;
+import com.sky_ecommerce.outbox.OutboxNode;
 import org.apache.kafka.clients.admin.NewTopic;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.producer.ProducerConfig;
 import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
 import org.apache.kafka.common.serialization.StringDeserializer;
 import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
@@ -16,11 +33,16 @@ import org.springframework.kafka.listener.CommonErrorHandler;
 import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
 import org.springframework.kafka.listener.ContainerProperties;
 import org.springframework.kafka.listener.DefaultErrorHandler;
-import org.springframework.kafka.support.serializer.JsonDeserializer;
-import org.springframework.kafka.support.serializer.JsonSerializer;
-// import org.springframework.util.backoff.ExponentialBackOffWithMaxRetries;
-import org.springframework.util.backoff.ExponentialBackOff;
+import org.springframework.kafka.listener.adapter.RecordFilterStrategy;
+import org.springframework.kafka.support.KafkaUtils;
+import org.springframework.kafka.support.converter.BatchMessagingMessageConverter;
+import org.springframework.kafka.support.converter.ConversionException;
+import org.springframework.kafka.support.serializer.DeserializationException;
+import org.springframework.messaging.converter.MessageConversionException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.util.backoff.FixedBackOff;
 
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -32,71 +54,216 @@ public class KafkaEcommerceConfig {
 
     // Producer
 
-    @Bean
-    public ProducerFactory<String, EventEnvelope<?>> ecommerceProducerFactory() {
+    private Map<String, Object> producerProps() {
         Map<String, Object> props = new HashMap<>();
         props.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
         props.put(ProducerConfig.ACKS_CONFIG, "all");
         props.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true);
         props.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
-        props.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, JsonSerializer.class);
         // batching hints
         props.put(ProducerConfig.LINGER_MS_CONFIG, 5);
         props.put(ProducerConfig.BATCH_SIZE_CONFIG, 32768);
         props.put(ProducerConfig.DELIVERY_TIMEOUT_MS_CONFIG, 120000);
+        return props;
+    }
+
+    // Envelope values are written in the format configured for their topic (JSON, CBOR or Smile)
+    @Bean
+    public ProducerFactory<String, EventEnvelope<?>> ecommerceProducerFactory(EnvelopeCodec codec) {
+        return new DefaultKafkaProducerFactory<>(producerProps(), new StringSerializer(), new EnvelopeSerializer(codec));
+    }
+
+    @Bean
+    public KafkaTemplate<String, EventEnvelope<?>> ecommerceKafkaTemplate(ProducerFactory<String, EventEnvelope<?>> ecommerceProducerFactory) {
+        KafkaTemplate<String, EventEnvelope<?>> template = new KafkaTemplate<>(ecommerceProducerFactory);
+        template.setObservationEnabled(true);
+        return template;
+    }
+
+    // Pre-serialized envelopes (outbox relay): bytes go to the broker as stored, no JSON round trip
+    @Bean
+    public ProducerFactory<String, byte[]> ecommerceRawProducerFactory() {
+        Map<String, Object> props = producerProps();
+        props.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class);
         return new DefaultKafkaProducerFactory<>(props);
     }
 
     @Bean
-    public KafkaTemplate<String, EventEnvelope<?>> ecommerceKafkaTemplate() {
-        KafkaTemplate<String, EventEnvelope<?>> template = new KafkaTemplate<>(ecommerceProducerFactory());
+    public KafkaTemplate<String, byte[]> ecommerceRawKafkaTemplate() {
+        KafkaTemplate<String, byte[]> template = new KafkaTemplate<>(ecommerceRawProducerFactory());
+        template.setObservationEnabled(true);
+        return template;
+    }
+
+    // Transactional relay mode: each relay lane is published in one Kafka transaction.
+    // The transactional id prefix carries the configured, stable node id: replicas never fence each other,
+    // while a restarted replica reuses its ids and so fences its previous incarnation.
+    @Bean
+    @ConditionalOnProperty(name = "outbox.relay.transactional", havingValue = "true")
+    public KafkaTemplate<String, byte[]> outboxTransactionalKafkaTemplate(OutboxNode node) {
+        Map<String, Object> props = producerProps();
+        props.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class);
+        DefaultKafkaProducerFactory<String, byte[]> pf = new DefaultKafkaProducerFactory<>(props);
+        pf.setTransactionIdPrefix("outbox-relay-" + node.getStableId() + "-");
+        KafkaTemplate<String, byte[]> template = new KafkaTemplate<>(pf);
         template.setObservationEnabled(true);
         return template;
     }
 
     // Consumer
 
+    // Values are consumed as raw bytes and decoded only for records a listener accepts
+    // (see EnvelopeMessageConverter and the event-type filters below)
     @Bean
-    public ConsumerFactory<String, EventEnvelope> ecommerceConsumerFactory() {
+    public ConsumerFactory<String, byte[]> ecommerceConsumerFactory() {
         Map<String, Object> props = new HashMap<>();
         props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
         props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
-        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, JsonDeserializer.class);
-        props.put(JsonDeserializer.TRUSTED_PACKAGES, "com.sky_ecommerce");
+        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class);
         props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        // never see records from aborted relay transactions (no effect on non-transactional producers)
+        props.put(ConsumerConfig.ISOLATION_LEVEL_CONFIG, "read_committed");
         props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "latest");
         props.put(ConsumerConfig.MAX_POLL_INTERVAL_MS_CONFIG, 600000);
         props.put(ConsumerConfig.SESSION_TIMEOUT_MS_CONFIG, 30000);
         return new DefaultKafkaConsumerFactory<>(
                 props,
                 new StringDeserializer(),
-                new JsonDeserializer<>(EventEnvelope.class, false)
+                new ByteArrayDeserializer()
         );
     }
 
     @Bean(name = "ecommerceKafkaListenerContainerFactory")
-    public ConcurrentKafkaListenerContainerFactory<String, EventEnvelope> ecommerceKafkaListenerContainerFactory(
-            ConsumerFactory<String, EventEnvelope> cf,
-            KafkaTemplate<String, EventEnvelope<?>> template
+    public ConcurrentKafkaListenerContainerFactory<String, byte[]> ecommerceKafkaListenerContainerFactory(
+            ConsumerFactory<String, byte[]> cf,
+            @Qualifier("ecommerceRawKafkaTemplate") KafkaTemplate<String, byte[]> template,
+            EnvelopeCodec codec
+    ) {
+        var factory = new ConcurrentKafkaListenerContainerFactory<String, byte[]>();
+        // format detected per record, so JSON and binary producers can coexist during rollout
+        factory.setRecordMessageConverter(new EnvelopeMessageConverter(codec));
+        configure(factory, cf, template);
+        return factory;
+    }
+
+    // Batch variant: listeners receive a whole poll (envelopes or raw records) and acknowledge it at once
+    @Bean(name = "ecommerceBatchKafkaListenerContainerFactory")
+    public ConcurrentKafkaListenerContainerFactory<String, byte[]> ecommerceBatchKafkaListenerContainerFactory(
+            ConsumerFactory<String, byte[]> cf,
+            @Qualifier("ecommerceRawKafkaTemplate") KafkaTemplate<String, byte[]> template,
+            EnvelopeCodec codec
+    ) {
+        var factory = new ConcurrentKafkaListenerContainerFactory<String, byte[]>();
+        factory.setBatchListener(true);
+        factory.setBatchMessageConverter(new BatchMessagingMessageConverter(new EnvelopeMessageConverter(codec)));
+        configure(factory, cf, template);
+        return factory;
+    }
+
+    // Batch variant for listeners that run their poll through KeyOrderedBatchProcessor: the processor remembers
+    // records completed ahead of a failure per partition and forgets them when a partition is revoked
+    @Bean(name = "ecommerceKeyOrderedKafkaListenerContainerFactory")
+    public ConcurrentKafkaListenerContainerFactory<String, byte[]> ecommerceKeyOrderedKafkaListenerContainerFactory(
+            ConsumerFactory<String, byte[]> cf,
+            @Qualifier("ecommerceRawKafkaTemplate") KafkaTemplate<String, byte[]> template,
+            ObjectProvider<KeyOrderedBatchProcessor> keyOrderedProcessor
     ) {
-        var factory = new ConcurrentKafkaListenerContainerFactory<String, EventEnvelope>();
+        var factory = new ConcurrentKafkaListenerContainerFactory<String, byte[]>();
+        factory.setBatchListener(true);
+        keyOrderedProcessor.ifAvailable(factory.getContainerProperties()::setConsumerRebalanceListener);
+        configure(factory, cf, template);
+        return factory;
+    }
+
+    // Bounded pool for key-ordered parallel processing (KeyOrderedBatchProcessor). Its queue holds at most
+    // one poll's lanes per listener thread, so it is left unbounded.
+    @Bean
+    public ThreadPoolTaskExecutor listenerParallelExecutor(@Value("${listeners.parallel.threads:16}") int threads) {
+        int size = Math.max(1, threads);
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(size);
+        executor.setMaxPoolSize(size);
+        executor.setThreadNamePrefix("listener-lane-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        return executor;
+    }
+
+    private void configure(ConcurrentKafkaListenerContainerFactory<String, byte[]> factory,
+                           ConsumerFactory<String, byte[]> cf,
+                           KafkaTemplate<String, byte[]> template) {
         factory.setConsumerFactory(cf);
         factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+        // records dropped by a listener's filter are acknowledged without reaching the listener
+        factory.setAckDiscarded(true);
 
+        // Failed records are not retried in place (which would stall the partition) but re-published at
+        // once to the next retry stage (RetryTopics), or straight to the DLT when retrying cannot help
         DeadLetterPublishingRecoverer recoverer =
-                new DeadLetterPublishingRecoverer(template, (record, ex) ->
-                        new TopicPartition(record.topic() + ".DLT", record.partition()));
+                new DeadLetterPublishingRecoverer(template, (record, ex) -> new TopicPartition(
+                        isFatal(ex) ? RetryTopics.baseTopic(record.topic()) + RetryTopics.DLT_SUFFIX
+                                : RetryTopics.next(record.topic(), retryAttempt(record)),
+                        record.partition()));
+        recoverer.setHeadersFunction(KafkaEcommerceConfig::retryHeaders);
 
-        ExponentialBackOff backoff = new ExponentialBackOff();
-        backoff.setInitialInterval(1000);
-        backoff.setMultiplier(2.0);
-        backoff.setMaxInterval(10000);
-
-        CommonErrorHandler errorHandler = new DefaultErrorHandler(recoverer, backoff);
+        CommonErrorHandler errorHandler = new DefaultErrorHandler(recoverer, new FixedBackOff(0L, 0L));
         factory.setCommonErrorHandler(errorHandler);
         factory.setConcurrency(3);
         factory.getContainerProperties().setMissingTopicsFatal(false);
-        return factory;
+    }
+
+    // Retry-stage headers (attempt, due time, the group that failed) plus, for dispatcher records, the
+    // handlers that failed, so a retry or replay only reaches those
+    private static Headers retryHeaders(ConsumerRecord<?, ?> record, Exception ex) {
+        Headers headers = new RecordHeaders();
+        int attempt = retryAttempt(record);
+        if (!isFatal(ex) && attempt < RetryTopics.DELAYS.size()) {
+            long dueAt = System.currentTimeMillis() + RetryTopics.DELAYS.get(attempt).toMillis();
+            // retry listeners run in their own groups, so the original group is carried along
+            String group = EventHeaders.read(record.headers(), EventHeaders.RETRY_GROUP);
+            group = group == null ? KafkaUtils.getConsumerGroupId() : group;
+            headers.add(EventHeaders.RETRY_ATTEMPT, Integer.toString(attempt + 1).getBytes(StandardCharsets.UTF_8));
+            headers.add(EventHeaders.RETRY_DUE_AT, Long.toString(dueAt).getBytes(StandardCharsets.UTF_8));
+            if (group != null) {
+                headers.add(EventHeaders.RETRY_GROUP, group.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        for (Throwable t = ex; t != null; t = t.getCause()) {
+            if (t instanceof EventDispatchException dispatch) {
+                headers.add(EventHeaders.DISPATCH_HANDLERS,
+                        String.join(",", dispatch.getHandlers()).getBytes(StandardCharsets.UTF_8));
+                break;
+            }
+        }
+        return headers;
+    }
+
+    private static int retryAttempt(ConsumerRecord<?, ?> record) {
+        String attempt = EventHeaders.read(record.headers(), EventHeaders.RETRY_ATTEMPT);
+        return attempt == null ? 0 : Integer.parseInt(attempt);
+    }
+
+    // Same exceptions DefaultErrorHandler does not retry: the record itself is bad, so it goes to the DLT
+    private static boolean isFatal(Exception ex) {
+        for (Throwable t = ex; t != null; t = t.getCause()) {
+            if (t instanceof ConversionException || t instanceof MessageConversionException
+                    || t instanceof DeserializationException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Per-listener event-type filters (@KafkaListener(filter = ...)), applied to headers before decoding
+
+    @Bean
+    public RecordFilterStrategy<String, byte[]> orderCreatedFilter() {
+        return new EventTypeFilter("OrderCreated");
+    }
+
+    @Bean
+    public RecordFilterStrategy<String, byte[]> orderPaidFilter() {
+        return new EventTypeFilter("OrderPaid");
     }
 
     // Optional topic beans (only effective with Kafka Admin enabled; else create via CLI)
@@ -120,6 +287,13 @@ public class KafkaEcommerceConfig {
         return new NewTopic(name, 3, (short) 1);
     }
 
+    @Bean
+    public KafkaAdmin.NewTopics orderEventsRetryTopics(@Value("${topics.order-events:order.events}") String name) {
+        return new KafkaAdmin.NewTopics(RetryTopics.DELAYS.stream()
+                .map(delay -> new NewTopic(RetryTopics.retryTopic(name, delay), 3, (short) 1))
+                .toArray(NewTopic[]::new));
+    }
+
     @Bean
     public NewTopic orderEventsDlt(@Value("${topics.order-events:order.events}") String name) {
         return new NewTopic(name + ".DLT", 3, (short) 1);
@@ -0,0 +1,72 @@
+package com.sky_ecommerce.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.task.ThreadPoolTaskSchedulerBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Thread pools reserved for the outbox, so relay and housekeeping never queue behind (or starve)
+ * other @Scheduled jobs, and shut down gracefully with the context.
+ *
+ * outboxTaskScheduler: runs the relay loop plus the outbox @Scheduled jobs (cluster heartbeat, compactor,
+ * metrics refresh).
+ * outboxRelayExecutor: the worker threads that send claimed rows.
+ * outboxContinuationExecutor: sends the next row of a key once the previous one is acknowledged.
+ * taskScheduler: the default scheduler for every other @Scheduled job. Declared here because defining
+ * any TaskScheduler bean switches off Spring Boot's auto-configured one.
+ */
+@Configuration
+public class OutboxExecutorConfig {
+
+    @Bean
+    public ThreadPoolTaskScheduler outboxTaskScheduler(@Value("${outbox.scheduler.pool-size:4}") int poolSize) {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        // one thread is held by the relay loop; the rest serve the periodic outbox jobs, so a long
+        // compaction run cannot delay the cluster heartbeat
+        scheduler.setPoolSize(Math.max(2, poolSize));
+        scheduler.setThreadNamePrefix("outbox-sched-");
+        scheduler.setWaitForTasksToCompleteOnShutdown(true);
+        scheduler.setAwaitTerminationSeconds(30);
+        return scheduler;
+    }
+
+    @Bean
+    public ThreadPoolTaskExecutor outboxRelayExecutor(@Value("${outbox.relay.workers:4}") int workers) {
+        int size = Math.max(1, workers);
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(size);
+        executor.setMaxPoolSize(size);
+        // a batch never has more lanes than workers; anything beyond that runs on the relay loop itself
+        executor.setQueueCapacity(size);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setThreadNamePrefix("outbox-relay-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        return executor;
+    }
+
+    // Same-key continuations are triggered from the producer's I/O thread. The queue is unbounded (a batch
+    // holds at most batch-max rows, so it cannot grow past that) and there is no caller-runs fallback:
+    // a send() blocking on a full buffer must never run on, and stall, the kafka-producer-network-thread.
+    @Bean
+    public ThreadPoolTaskExecutor outboxContinuationExecutor(@Value("${outbox.relay.workers:4}") int workers) {
+        int size = Math.max(1, workers);
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(size);
+        executor.setMaxPoolSize(size);
+        executor.setThreadNamePrefix("outbox-chain-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        return executor;
+    }
+
+    @Bean
+    public ThreadPoolTaskScheduler taskScheduler(ThreadPoolTaskSchedulerBuilder builder) {
+        return builder.build();
+    }
+}
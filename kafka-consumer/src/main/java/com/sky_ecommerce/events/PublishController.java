@@ -16,6 +16,8 @@ import java.util.Map;
 @RequestMapping("/api/events")
 public class PublishController {
 
+    private static final String SOURCE = "publish-api";
+
     private final KafkaTemplate<String, EventEnvelope<?>> kafkaTemplate;
     private final EventEnvelopeFactory envelopeFactory;
 
@@ -32,10 +34,10 @@ public class PublishController {
         String aggregateId = (key != null && !key.isEmpty()) ? key : UUID.randomUUID().toString();
         EventEnvelope<?> envelope = envelopeFactory.create(
                 "ORDER_CREATED",   // eventType
-                "v1",              // eventVersion
-                "ORDER",           // aggregateType
-                aggregateId,       // aggregateId
-                0,                 // sequence
+                aggregateId,       // subjectId
+                SOURCE,            // source
+                null,              // correlationId (generated)
+                1,                 // schemaVersion
                 request            // payload
         );
         kafkaTemplate.send("order.events", key, envelope);
@@ -64,14 +66,13 @@ public class PublishController {
         };
 
         String eventType = StringUtils.hasText(body.type()) ? body.type() : (domain.toUpperCase() + "_EVENT");
-        String aggregateType = domain.toUpperCase();
         String aggregateId = (StringUtils.hasText(body.key()) ? body.key() : UUID.randomUUID().toString());
         EventEnvelope<?> envelope = envelopeFactory.create(
                 eventType,       // eventType
-                "v1",            // eventVersion
-                aggregateType,   // aggregateType
-                aggregateId,     // aggregateId
-                0,               // sequence
+                aggregateId,     // subjectId
+                SOURCE,          // source
+                null,            // correlationId (generated)
+                1,               // schemaVersion
                 body.payload()   // payload
         );
         kafkaTemplate.send(topic, body.key(), envelope);
@@ -0,0 +1,74 @@
+package com.sky_ecommerce.idempotency;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-size, thread-safe Bloom filter over string keys. Sized for an expected number of insertions at
+ * a target false-positive rate; bit positions come from double hashing two 64-bit mixes of the key.
+ */
+final class EventBloomFilter {
+
+    private final AtomicLongArray words;
+    private final long numBits;
+    private final int hashes;
+    private final int capacity;
+    private final AtomicInteger count = new AtomicInteger();
+
+    EventBloomFilter(int expectedInsertions, double fpp) {
+        this.capacity = Math.max(1, expectedInsertions);
+        double ln2 = Math.log(2);
+        long bits = (long) Math.ceil(-capacity * Math.log(fpp) / (ln2 * ln2));
+        this.numBits = Math.max(64, (bits + 63) / 64 * 64);
+        this.words = new AtomicLongArray((int) (numBits / 64));
+        this.hashes = Math.max(1, (int) Math.round((double) numBits / capacity * ln2));
+    }
+
+    boolean mightContain(String key) {
+        long h1 = hash(key);
+        long h2 = mix(h1 ^ 0x9E3779B97F4A7C15L) | 1;
+        for (int i = 0; i < hashes; i++) {
+            long bit = Math.floorMod(h1 + i * h2, numBits);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    void put(String key) {
+        long h1 = hash(key);
+        long h2 = mix(h1 ^ 0x9E3779B97F4A7C15L) | 1;
+        for (int i = 0; i < hashes; i++) {
+            long bit = Math.floorMod(h1 + i * h2, numBits);
+            int index = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long word;
+            do {
+                word = words.get(index);
+            } while ((word & mask) == 0 && !words.compareAndSet(index, word, word | mask));
+        }
+        count.incrementAndGet();
+    }
+
+    boolean isFull() {
+        return count.get() >= capacity;
+    }
+
+    private static long hash(String key) {
+        // FNV-1a over the UTF-8 bytes, finalised with a 64-bit mix
+        long h = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        return mix(h);
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return z ^ (z >>> 33);
+    }
+}
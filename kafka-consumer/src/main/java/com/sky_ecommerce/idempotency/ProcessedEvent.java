@@ -0,0 +1,59 @@
+package com.sky_ecommerce.idempotency;
+
+import jakarta.persistence.*;
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.Objects;
+
+/**
+ * Marker that a consumer has applied an event's side effects. Inserted in the same transaction as
+ * those side effects and deleted once older than the dedupe window.
+ */
+@Entity
+@IdClass(ProcessedEvent.Key.class)
+@Table(name = "processed_events", indexes = {
+        @Index(name = "idx_processed_events_processed_at", columnList = "processedAt")
+})
+public class ProcessedEvent {
+
+    @Id
+    @Column(length = 64)
+    private String consumer;
+
+    @Id
+    @Column(length = 64)
+    private String eventId; // envelope id
+
+    @Column(nullable = false)
+    private Instant processedAt;
+
+    public String getConsumer() { return consumer; }
+    public String getEventId() { return eventId; }
+    public Instant getProcessedAt() { return processedAt; }
+
+    public void setConsumer(String consumer) { this.consumer = consumer; }
+    public void setEventId(String eventId) { this.eventId = eventId; }
+    public void setProcessedAt(Instant processedAt) { this.processedAt = processedAt; }
+
+    public static class Key implements Serializable {
+        private String consumer;
+        private String eventId;
+
+        public Key() {}
+
+        public Key(String consumer, String eventId) {
+            this.consumer = consumer;
+            this.eventId = eventId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key k && Objects.equals(consumer, k.consumer) && Objects.equals(eventId, k.eventId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(consumer, eventId);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.sky_ecommerce.idempotency;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+
+public interface ProcessedEventRepository extends JpaRepository<ProcessedEvent, ProcessedEvent.Key> {
+
+    // Atomic claim: 1 if this call recorded the event, 0 if it was already recorded (possibly by a
+    // concurrent transaction, which this insert waits on)
+    @Modifying
+    @Query(value = "insert into processed_events (consumer, event_id, processed_at) " +
+            "values (:consumer, :eventId, :processedAt) on conflict do nothing", nativeQuery = true)
+    int claim(@Param("consumer") String consumer,
+              @Param("eventId") String eventId,
+              @Param("processedAt") Instant processedAt);
+
+    @Modifying
+    @Query(value = "delete from processed_events where (consumer, event_id) in (" +
+            "select consumer, event_id from processed_events where processed_at < :cutoff limit :limit)",
+            nativeQuery = true)
+    int deleteProcessedBefore(@Param("cutoff") Instant cutoff, @Param("limit") int limit);
+}
@@ -0,0 +1,188 @@
+package com.sky_ecommerce.idempotency;
+
+import com.sky_ecommerce.common.GroupCommitExecutor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Idempotent-consumer store keyed on (consumer, envelope id).
+ *
+ * The guarantee comes from the processed_events table: {@link #claim} inserts the key in the same
+ * transaction as the consumer's side effects, so a redelivered event either finds the row and skips,
+ * or waits for the first transaction and skips once it commits; if that transaction rolls back the
+ * claim goes with it. In front sits a bounded in-memory Bloom filter of recently claimed keys:
+ * {@link #seen} only queries the table when the filter reports a possible hit, so fresh events (the
+ * common case) are checked without a round trip. The filter keeps two generations and drops the older
+ * one when the newer fills up; a forgotten key only costs the skipped lookup, never a duplicate.
+ *
+ * Rows older than {@code idempotency.ttl} are deleted in chunks; the TTL must outlast any redelivery
+ * (error-handler retries, outbox re-sends, consumer-group rewinds) that should still be deduplicated.
+ */
+@Component
+public class ProcessedEventStore {
+
+    private static final Logger log = LoggerFactory.getLogger(ProcessedEventStore.class);
+
+    private final ProcessedEventRepository repository;
+    private final GroupCommitExecutor groupCommit;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration ttl;
+    private final int chunkSize;
+    private final int filterInsertions;
+    private final double filterFpp;
+
+    private volatile EventBloomFilter current;
+    private volatile EventBloomFilter previous;
+
+    private final Counter filterMisses;
+    private final Counter duplicates;
+
+    public ProcessedEventStore(ProcessedEventRepository repository,
+                               GroupCommitExecutor groupCommit,
+                               PlatformTransactionManager transactionManager,
+                               MeterRegistry meterRegistry,
+                               @Value("${idempotency.ttl:P7D}") Duration ttl,
+                               @Value("${idempotency.cleanup.chunk-size:1000}") int chunkSize,
+                               @Value("${idempotency.filter.expected-insertions:1000000}") int filterInsertions,
+                               @Value("${idempotency.filter.fpp:0.01}") double filterFpp) {
+        this.repository = repository;
+        this.groupCommit = groupCommit;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.ttl = ttl;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.filterInsertions = filterInsertions;
+        this.filterFpp = filterFpp;
+        this.current = new EventBloomFilter(filterInsertions, filterFpp);
+        this.previous = new EventBloomFilter(1, filterFpp);
+
+        this.filterMisses = Counter.builder("idempotency.filter.misses")
+                .description("Duplicate checks answered by the in-memory filter without a database lookup")
+                .register(meterRegistry);
+        this.duplicates = Counter.builder("idempotency.duplicates")
+                .description("Redelivered events skipped because their consumer had already processed them")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Cheap pre-check before doing any work for an event. A true result is authoritative (the row is
+     * committed); a false result is not, so side effects must still go through {@link #runOnce}.
+     */
+    public boolean seen(String consumer, String eventId) {
+        if (eventId == null) {
+            return false;
+        }
+        String key = key(consumer, eventId);
+        if (!current.mightContain(key) && !previous.mightContain(key)) {
+            filterMisses.increment();
+            return false;
+        }
+        boolean seen = repository.existsById(new ProcessedEvent.Key(consumer, eventId));
+        if (seen) {
+            duplicates.increment();
+        }
+        return seen;
+    }
+
+    /**
+     * Records the event as processed by consumer in the caller's transaction, which must exist: a claim
+     * committed on its own would mark the event processed even if the work then failed.
+     *
+     * @return true if this transaction claimed it, false if it was already processed
+     */
+    public boolean claim(String consumer, String eventId) {
+        // checked here rather than with @Transactional(MANDATORY), which runOnce's self-calls would bypass
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException(
+                    "claim(" + consumer + ", " + eventId + ") must run in the transaction of its work");
+        }
+        boolean claimed = repository.claim(consumer, eventId, Instant.now()) == 1;
+        remember(key(consumer, eventId));
+        if (!claimed) {
+            duplicates.increment();
+        }
+        return claimed;
+    }
+
+    /**
+     * Runs work in one transaction with the claim, unless the event was already processed. Events
+     * without an id cannot be deduplicated and always run.
+     */
+    public void runOnce(String consumer, String eventId, Runnable work) {
+        groupCommit.execute(() -> {
+            if (eventId == null || claim(consumer, eventId)) {
+                work.run();
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Batch form of {@link #runOnce}: claims every item in one transaction and hands the ones not
+     * processed before to work, in the same transaction.
+     */
+    public <T> void runOnce(String consumer, List<T> items, Function<T, String> eventId, Consumer<List<T>> work) {
+        groupCommit.execute(() -> {
+            List<T> fresh = new ArrayList<>(items.size());
+            for (T item : items) {
+                String id = eventId.apply(item);
+                if (id == null || claim(consumer, id)) {
+                    fresh.add(item);
+                }
+            }
+            work.accept(fresh);
+            return null;
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${idempotency.cleanup.interval-ms:3600000}",
+            initialDelayString = "${idempotency.cleanup.initial-delay-ms:60000}")
+    public void cleanup() {
+        try {
+            Instant cutoff = Instant.now().minus(ttl);
+            long total = 0;
+            int deleted;
+            do {
+                Integer chunk = transactionTemplate.execute(status -> repository.deleteProcessedBefore(cutoff, chunkSize));
+                deleted = chunk == null ? 0 : chunk;
+                total += deleted;
+            } while (deleted == chunkSize);
+            if (total > 0) {
+                log.info("Removed {} processed-event markers older than {}", total, cutoff);
+            }
+        } catch (Exception e) {
+            log.error("Processed-event cleanup failed", e);
+        }
+    }
+
+    private void remember(String key) {
+        EventBloomFilter filter = current;
+        filter.put(key);
+        if (filter.isFull()) {
+            synchronized (this) {
+                if (current == filter) {
+                    previous = filter;
+                    current = new EventBloomFilter(filterInsertions, filterFpp);
+                }
+            }
+        }
+    }
+
+    private static String key(String consumer, String eventId) {
+        return consumer + '\u0000' + eventId;
+    }
+}
@@ -1,15 +1,22 @@
 package com.sky_ecommerce.listeners;
 
+import com.sky_ecommerce.common.EnvelopeCodec;
 import com.sky_ecommerce.common.EventEnvelope;
+import com.sky_ecommerce.idempotency.ProcessedEventStore;
 import com.sky_ecommerce.order.service.OrderService;
+import com.sky_ecommerce.order.service.events.OrderEvents;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.listener.BatchListenerFailedException;
 import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.kafka.support.converter.ConversionException;
 import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.stereotype.Service;
 
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
 
 /**
@@ -20,30 +27,63 @@ import java.util.Random;
 public class EcommerceListeners {
 
     private static final Logger log = LoggerFactory.getLogger(EcommerceListeners.class);
+    // processed-event consumer name for payments, shared by every payment mode and the dispatcher
+    private static final String PAYMENT_CONSUMER = "payment-simulator";
     private final OrderService orderService;
+    private final ProcessedEventStore processedEvents;
+    private final EnvelopeCodec envelopeCodec;
+    private final KeyOrderedBatchProcessor keyOrderedProcessor;
     private final Random random = new Random();
 
-    public EcommerceListeners(OrderService orderService) {
+    public EcommerceListeners(OrderService orderService,
+                              ProcessedEventStore processedEvents,
+                              EnvelopeCodec envelopeCodec,
+                              KeyOrderedBatchProcessor keyOrderedProcessor) {
         this.orderService = orderService;
+        this.processedEvents = processedEvents;
+        this.envelopeCodec = envelopeCodec;
+        this.keyOrderedProcessor = keyOrderedProcessor;
     }
 
+    // Each listener's filter drops other event types by header before the value is decoded; the
+    // eventType checks below only matter for records produced without headers.
+    // With listeners.dispatch.enabled the three per-service groups stay stopped and OrderEventDispatcher
+    // reads order.events once, calling the handle* methods below.
+
     // Payment Service simulation:
     // Consumes OrderCreated events from order.events
     // Emits PaymentSucceeded/PaymentFailed indirectly by calling OrderService methods which write outbox (OrderPaid/OrderCancelled)
     @KafkaListener(
             topics = "${topics.order-events:order.events}",
             groupId = "payment-simulator",
-            containerFactory = "ecommerceKafkaListenerContainerFactory"
+            filter = "orderCreatedFilter",
+            containerFactory = "ecommerceKafkaListenerContainerFactory",
+            autoStartup = "#{'${listeners.payment.mode:record}' == 'record' and !${listeners.dispatch.enabled:false}}"
     )
-    public void onOrderCreated(@Payload EventEnvelope<Map<String, Object>> env, Acknowledgment ack) {
+    public void onOrderCreated(@Payload EventEnvelope<?> env, Acknowledgment ack) {
         try {
             if (!"OrderCreated".equals(env.getEventType())) {
                 ack.acknowledge();
                 return;
             }
-            String orderId = String.valueOf(env.getPayload().get("orderId"));
-            // Simulate payment decision (80% success)
-            boolean success = random.nextInt(10) < 8;
+            handlePayment(env);
+            ack.acknowledge();
+        } catch (Exception e) {
+            // Let the container's error handler move it to the retry topics by rethrowing
+            throw e;
+        }
+    }
+
+    public void handlePayment(EventEnvelope<?> env) {
+        String orderId = payload(env, OrderEvents.OrderCreated.class).getOrderId();
+        if (processedEvents.seen(PAYMENT_CONSUMER, env.getId())) {
+            log.info("Skipping already processed OrderCreated {} for order {}", env.getId(), orderId);
+            return;
+        }
+        // Simulate payment decision (80% success)
+        boolean success = random.nextInt(10) < 8;
+        // the processed-event claim commits with the status change, so a redelivery can never apply twice
+        processedEvents.runOnce(PAYMENT_CONSUMER, env.getId(), () -> {
             if (success) {
                 log.info("Payment succeeded for order {}", orderId);
                 orderService.markPaid(orderId, env.getCorrelationId());
@@ -51,11 +91,97 @@ public class EcommerceListeners {
                 log.warn("Payment failed for order {}", orderId);
                 orderService.cancel(orderId, env.getCorrelationId(), "payment-failed");
             }
-            ack.acknowledge();
-        } catch (Exception e) {
-            // Let container handle retries via DefaultErrorHandler by rethrowing
-            throw e;
+        });
+    }
+
+    // Payment Service simulation, batch mode (listeners.payment.mode=batch):
+    // Same group as onOrderCreated, which stays stopped in this mode. A whole poll is decided, then all
+    // orders are updated and all outbox rows written in one transaction. If that transaction fails the
+    // outcomes are re-applied one per transaction to find the offending record, which is raised as a
+    // BatchListenerFailedException: records before it stay applied and only it goes to the retry topics.
+    @KafkaListener(
+            topics = "${topics.order-events:order.events}",
+            groupId = "payment-simulator",
+            filter = "orderCreatedFilter",
+            containerFactory = "ecommerceBatchKafkaListenerContainerFactory",
+            autoStartup = "#{'${listeners.payment.mode:record}' == 'batch' and !${listeners.dispatch.enabled:false}}"
+    )
+    public void onOrderCreatedBatch(List<ConsumerRecord<String, byte[]>> records, Acknowledgment ack) {
+        List<OrderService.PaymentOutcome> outcomes = new ArrayList<>(records.size());
+        List<ConsumerRecord<String, byte[]>> sources = new ArrayList<>(records.size());
+        ConsumerRecord<String, byte[]> undecodable = null;
+        ConversionException decodeError = null;
+        for (ConsumerRecord<String, byte[]> record : records) {
+            EventEnvelope<?> env;
+            OrderEvents.OrderCreated created;
+            try {
+                env = envelopeCodec.decodeLazy(record.value());
+                created = "OrderCreated".equals(env.getEventType())
+                        ? payload(env, OrderEvents.OrderCreated.class) : null;
+            } catch (RuntimeException e) {
+                // apply what came before it, then fail at this record; as a ConversionException, like the
+                // converter's, it goes straight to the DLT
+                undecodable = record;
+                decodeError = e instanceof ConversionException conversion ? conversion
+                        : new ConversionException("Cannot read envelope from " + record.topic() + "-"
+                        + record.partition() + "@" + record.offset(), record, e);
+                break;
+            }
+            if (created == null || processedEvents.seen(PAYMENT_CONSUMER, env.getId())) {
+                continue;
+            }
+            // Simulate payment decision (80% success)
+            boolean success = random.nextInt(10) < 8;
+            outcomes.add(new OrderService.PaymentOutcome(created.getOrderId(), env.getId(), env.getCorrelationId(),
+                    success, success ? null : "payment-failed"));
+            sources.add(record);
+        }
+        applyPaymentBatch(outcomes, sources);
+        if (undecodable != null) {
+            throw new BatchListenerFailedException("Undecodable record in payment batch", decodeError, undecodable);
         }
+        log.info("Payment batch of {} records applied ({} orders)", records.size(), outcomes.size());
+        ack.acknowledge();
+    }
+
+    private void applyPaymentBatch(List<OrderService.PaymentOutcome> outcomes,
+                                   List<ConsumerRecord<String, byte[]>> sources) {
+        try {
+            processedEvents.runOnce(PAYMENT_CONSUMER, outcomes, OrderService.PaymentOutcome::eventId,
+                    orderService::applyPayments);
+        } catch (RuntimeException batchError) {
+            log.warn("Payment batch of {} orders failed, applying one at a time", outcomes.size(), batchError);
+            for (int i = 0; i < outcomes.size(); i++) {
+                OrderService.PaymentOutcome outcome = outcomes.get(i);
+                try {
+                    processedEvents.runOnce(PAYMENT_CONSUMER, outcome.eventId(),
+                            () -> orderService.applyPayments(List.of(outcome)));
+                } catch (RuntimeException e) {
+                    throw new BatchListenerFailedException("Payment failed for order " + outcome.orderId(), e,
+                            sources.get(i));
+                }
+            }
+        }
+    }
+
+    // Payment Service simulation, parallel mode (listeners.payment.mode=parallel):
+    // Same group again. A poll is split into per-order lanes run concurrently on a bounded pool, so the
+    // blocking order updates overlap while each order's events still apply in sequence.
+    @KafkaListener(
+            topics = "${topics.order-events:order.events}",
+            groupId = "payment-simulator",
+            filter = "orderCreatedFilter",
+            containerFactory = "ecommerceKeyOrderedKafkaListenerContainerFactory",
+            autoStartup = "#{'${listeners.payment.mode:record}' == 'parallel' and !${listeners.dispatch.enabled:false}}"
+    )
+    public void onOrderCreatedParallel(List<ConsumerRecord<String, byte[]>> records, Acknowledgment ack) {
+        keyOrderedProcessor.process(records, record -> {
+            EventEnvelope<?> env = envelopeCodec.decodeLazy(record.value());
+            if ("OrderCreated".equals(env.getEventType())) {
+                handlePayment(env);
+            }
+        });
+        ack.acknowledge();
     }
 
     // Inventory Service simulation:
@@ -64,40 +190,64 @@ public class EcommerceListeners {
     @KafkaListener(
             topics = "${topics.order-events:order.events}",
             groupId = "inventory-simulator",
-            containerFactory = "ecommerceKafkaListenerContainerFactory"
+            filter = "orderCreatedFilter",
+            containerFactory = "ecommerceKafkaListenerContainerFactory",
+            autoStartup = "#{!${listeners.dispatch.enabled:false}}"
     )
-    public void onOrderCreatedInventory(@Payload EventEnvelope<Map<String, Object>> env, Acknowledgment ack) {
+    public void onOrderCreatedInventory(@Payload EventEnvelope<?> env, Acknowledgment ack) {
         try {
             if (!"OrderCreated".equals(env.getEventType())) {
                 ack.acknowledge();
                 return;
             }
-            String orderId = String.valueOf(env.getPayload().get("orderId"));
-            log.info("Inventory reserved for order {} (simulated)", orderId);
+            handleInventory(env);
             ack.acknowledge();
         } catch (Exception e) {
             throw e;
         }
     }
 
+    public void handleInventory(EventEnvelope<?> env) {
+        String orderId = payload(env, OrderEvents.OrderCreated.class).getOrderId();
+        log.info("Inventory reserved for order {} (simulated)", orderId);
+    }
+
     // Notification Service simulation:
     // Consumes OrderPaid and would emit NotificationRequested; here we just log.
     @KafkaListener(
             topics = "${topics.order-events:order.events}",
             groupId = "notification-simulator",
-            containerFactory = "ecommerceKafkaListenerContainerFactory"
+            filter = "orderPaidFilter",
+            containerFactory = "ecommerceKafkaListenerContainerFactory",
+            autoStartup = "#{!${listeners.dispatch.enabled:false}}"
     )
-    public void onOrderPaidNotify(@Payload EventEnvelope<Map<String, Object>> env, Acknowledgment ack) {
+    public void onOrderPaidNotify(@Payload EventEnvelope<?> env, Acknowledgment ack) {
         try {
             if (!"OrderPaid".equals(env.getEventType())) {
                 ack.acknowledge();
                 return;
             }
-            String orderId = String.valueOf(env.getPayload().get("orderId"));
-            log.info("Notification sent for paid order {} (simulated)", orderId);
+            handleNotification(env);
             ack.acknowledge();
         } catch (Exception e) {
             throw e;
         }
     }
+
+    public void handleNotification(EventEnvelope<?> env) {
+        String orderId = payload(env, OrderEvents.OrderPaid.class).getOrderId();
+        log.info("Notification sent for paid order {} (simulated)", orderId);
+    }
+
+    // A payload of another class than its eventType promises (a registry mismatch, a missed upcast) is a
+    // poison record: ConversionException sends it straight to the DLT instead of through the retry stages
+    private static <P> P payload(EventEnvelope<?> env, Class<P> type) {
+        Object payload = env.getPayload();
+        if (!type.isInstance(payload)) {
+            String actual = payload == null ? "no payload" : payload.getClass().getName();
+            throw new ConversionException("Event " + env.getId() + " (" + env.getEventType() + " v"
+                    + env.getSchemaVersion() + ") carries " + actual + ", expected " + type.getName(), null);
+        }
+        return type.cast(payload);
+    }
 }
@@ -0,0 +1,131 @@
+package com.sky_ecommerce.listeners;
+
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.kafka.listener.BatchListenerFailedException;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+/**
+ * Processes a poll's records in parallel while keeping per-key order: records are grouped into one lane
+ * per (partition, key), lanes run on the bounded listenerParallelExecutor pool, and records within a lane
+ * run one after another. A failure stops the rest of its lane, so later events for that key wait for it.
+ *
+ * Offsets are only ever committed by the container: the listener acknowledges a fully completed batch,
+ * and on a failure the error handler commits the records before the lowest one left unfinished and
+ * redelivers the rest. Completed records after it are remembered and skipped once when they come back,
+ * so they are not processed twice. That memory is per partition and dropped when the partition is
+ * revoked, which is why this is also the container's rebalance listener.
+ */
+@Component
+public class KeyOrderedBatchProcessor implements ConsumerRebalanceListener {
+
+    private final Executor pool;
+    // completed offsets above the committed position, per partition
+    private final Map<TopicPartition, NavigableSet<Long>> completedAhead = new ConcurrentHashMap<>();
+
+    public KeyOrderedBatchProcessor(@Qualifier("listenerParallelExecutor") Executor pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Runs action for every record. Returns normally when all records completed (the caller then
+     * acknowledges the batch); otherwise throws BatchListenerFailedException at the lowest record, across
+     * all partitions, that did not complete, so the container's error handler commits everything before
+     * it, moves it to the retry topics and redelivers the rest.
+     */
+    public void process(List<ConsumerRecord<String, byte[]>> records,
+                        Consumer<ConsumerRecord<String, byte[]>> action) {
+        int n = records.size();
+        boolean[] done = new boolean[n];
+        RuntimeException[] errors = new RuntimeException[n];
+
+        Map<Object, List<Integer>> lanes = new LinkedHashMap<>();
+        for (int i = 0; i < n; i++) {
+            ConsumerRecord<String, byte[]> record = records.get(i);
+            if (wasCompleted(record)) {
+                done[i] = true;
+            } else {
+                // records without a key carry no ordering and get a lane each
+                Object lane = record.key() == null ? i : List.of(record.partition(), record.topic(), record.key());
+                lanes.computeIfAbsent(lane, k -> new ArrayList<>()).add(i);
+            }
+        }
+
+        CompletableFuture.allOf(lanes.values().stream()
+                .map(lane -> CompletableFuture.runAsync(() -> {
+                    for (int i : lane) {
+                        try {
+                            action.accept(records.get(i));
+                            done[i] = true;
+                        } catch (RuntimeException e) {
+                            errors[i] = e;
+                            return;
+                        }
+                    }
+                }, pool))
+                .toArray(CompletableFuture[]::new)).join();
+
+        int firstFailed = 0;
+        while (firstFailed < n && done[firstFailed]) {
+            firstFailed++;
+        }
+        if (firstFailed == n) {
+            // the whole batch is acknowledged: nothing at or below its positions can come back
+            Map<TopicPartition, Long> positions = new HashMap<>();
+            for (ConsumerRecord<String, byte[]> record : records) {
+                positions.put(new TopicPartition(record.topic(), record.partition()), record.offset() + 1);
+            }
+            positions.forEach((tp, position) -> completedAhead.computeIfPresent(tp, (k, offsets) -> {
+                offsets.headSet(position).clear();
+                return offsets.isEmpty() ? null : offsets;
+            }));
+            return;
+        }
+
+        // the error handler redelivers everything from firstFailed on, in every partition
+        for (int i = firstFailed + 1; i < n; i++) {
+            ConsumerRecord<String, byte[]> record = records.get(i);
+            if (done[i]) {
+                completedAhead.computeIfAbsent(new TopicPartition(record.topic(), record.partition()),
+                        k -> new ConcurrentSkipListSet<>()).add(record.offset());
+            }
+        }
+
+        RuntimeException cause = null;
+        for (int i = firstFailed; i < n && cause == null; i++) {
+            cause = errors[i];
+        }
+        // by record, not index: records is the filtered view, the error handler indexes the full poll
+        throw new BatchListenerFailedException("Record failed in key-ordered batch", cause, records.get(firstFailed));
+    }
+
+    @Override
+    public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+        // whoever gets the partition next starts from its committed offset, without this node's memory
+        partitions.forEach(completedAhead::remove);
+    }
+
+    @Override
+    public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+    }
+
+    private boolean wasCompleted(ConsumerRecord<String, byte[]> record) {
+        NavigableSet<Long> offsets = completedAhead.get(new TopicPartition(record.topic(), record.partition()));
+        return offsets != null && offsets.remove(record.offset());
+    }
+}
@@ -0,0 +1,47 @@
+package com.sky_ecommerce.listeners;
+
+import com.sky_ecommerce.common.EventEnvelope;
+import com.sky_ecommerce.common.EventHeaders;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+
+/**
+ * Reads order.events once (group order-events-dispatcher) and fans each decoded envelope out to the
+ * {@link OrderEventHandlers} registered for its eventType, instead of every simulated service fetching
+ * and decoding the topic in its own consumer group. Enabled with listeners.dispatch.enabled.
+ *
+ * When a handler fails, the others still run. The record is then re-published to a retry topic carrying
+ * the names of the handlers that still need it, and only those run it again (see OrderEventRetryListener),
+ * up to the DLT.
+ */
+@Service
+public class OrderEventDispatcher {
+
+    private final OrderEventHandlers handlers;
+
+    public OrderEventDispatcher(OrderEventHandlers handlers) {
+        this.handlers = handlers;
+    }
+
+    @KafkaListener(
+            id = "order-events-dispatcher",
+            topics = "${topics.order-events:order.events}",
+            groupId = "order-events-dispatcher",
+            filter = "orderEventHandlers",
+            containerFactory = "ecommerceKafkaListenerContainerFactory",
+            autoStartup = "${listeners.dispatch.enabled:false}"
+    )
+    public void dispatch(@Payload EventEnvelope<?> env,
+                         @Header(name = EventHeaders.DISPATCH_HANDLERS, required = false) byte[] targets,
+                         Acknowledgment ack) {
+        Set<String> only = targets == null ? null : Set.of(new String(targets, StandardCharsets.UTF_8).split(","));
+        handlers.dispatch(env, only);
+        ack.acknowledge();
+    }
+}
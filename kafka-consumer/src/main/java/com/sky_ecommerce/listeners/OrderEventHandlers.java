@@ -0,0 +1,128 @@
+package com.sky_ecommerce.listeners;
+
+import com.sky_ecommerce.common.EventDispatchException;
+import com.sky_ecommerce.common.EventEnvelope;
+import com.sky_ecommerce.common.EventHeaders;
+import com.sky_ecommerce.idempotency.ProcessedEventStore;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.kafka.listener.adapter.RecordFilterStrategy;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Handlers that {@link OrderEventDispatcher} and {@link OrderEventRetryListener} fan order.events records
+ * out to, by eventType. Also the dispatcher's record filter: records no handler subscribes to are dropped
+ * by header, before decoding.
+ *
+ * Each handler's progress is kept in the {@link ProcessedEventStore} under its own consumer name
+ * ({@code handler:<name>}): the claim commits with the handler's database work, so a redelivered record
+ * (a rebalance, a rewind, the retry topics) skips the handlers that already completed it, across
+ * restarts and nodes, for as long as idempotency.ttl keeps the marker.
+ */
+@Component("orderEventHandlers")
+public class OrderEventHandlers implements RecordFilterStrategy<String, byte[]> {
+
+    private static final Logger log = LoggerFactory.getLogger(OrderEventHandlers.class);
+
+    private final List<Handler> handlers = new CopyOnWriteArrayList<>();
+    private final ProcessedEventStore processedEvents;
+
+    public OrderEventHandlers(EcommerceListeners listeners, ProcessedEventStore processedEvents) {
+        this.processedEvents = processedEvents;
+        register("payment", "payment-simulator", Set.of("OrderCreated"), listeners::handlePayment);
+        register("inventory", "inventory-simulator", Set.of("OrderCreated"), listeners::handleInventory);
+        register("notification", "notification-simulator", Set.of("OrderPaid"), listeners::handleNotification);
+    }
+
+    /**
+     * @param group consumer group of the standalone listener running the same action, so its retried
+     *              records reach only this handler
+     */
+    public void register(String name, String group, Set<String> eventTypes, Consumer<EventEnvelope<?>> action) {
+        handlers.add(new Handler(name, group, Set.copyOf(eventTypes), action));
+    }
+
+    public List<Handler> all() {
+        return handlers;
+    }
+
+    /** Names of the handlers standing in for a consumer group, or null if none does (e.g. the dispatcher's). */
+    public Set<String> forGroup(String group) {
+        Set<String> names = handlers.stream()
+                .filter(h -> h.group.equals(group))
+                .map(Handler::name)
+                .collect(Collectors.toSet());
+        return names.isEmpty() ? null : names;
+    }
+
+    /**
+     * Runs every handler for env's eventType (restricted to only, when given) that has not yet completed
+     * this event. All of them run even if some fail; then EventDispatchException names the failed ones.
+     */
+    public void dispatch(EventEnvelope<?> env, Set<String> only) {
+        List<String> failed = new ArrayList<>();
+        RuntimeException cause = null;
+        for (Handler handler : handlers) {
+            if (!handler.handles(env.getEventType())
+                    || (only != null && !only.contains(handler.name()))
+                    || processedEvents.seen(handler.consumer(), env.getId())) {
+                continue;
+            }
+            try {
+                processedEvents.runOnce(handler.consumer(), env.getId(), () -> handler.handle(env));
+            } catch (RuntimeException e) {
+                log.warn("Handler {} failed for {} {}", handler.name(), env.getEventType(), env.getId(), e);
+                failed.add(handler.name());
+                cause = cause == null ? e : cause;
+            }
+        }
+        if (!failed.isEmpty()) {
+            throw new EventDispatchException(failed, cause);
+        }
+    }
+
+    @Override
+    public boolean filter(ConsumerRecord<String, byte[]> record) {
+        String eventType = EventHeaders.read(record.headers(), EventHeaders.EVENT_TYPE);
+        return eventType != null && handlers.stream().noneMatch(h -> h.handles(eventType));
+    }
+
+    public static final class Handler {
+        private final String name;
+        private final String group;
+        private final Set<String> eventTypes;
+        private final Consumer<EventEnvelope<?>> action;
+
+        private Handler(String name, String group, Set<String> eventTypes, Consumer<EventEnvelope<?>> action) {
+            this.name = name;
+            this.group = group;
+            this.eventTypes = eventTypes;
+            this.action = action;
+        }
+
+        public String name() {
+            return name;
+        }
+
+        public boolean handles(String eventType) {
+            return eventTypes.contains(eventType);
+        }
+
+        public void handle(EventEnvelope<?> env) {
+            action.accept(env);
+        }
+
+        // consumer name of this handler's markers in the processed-event store
+        String consumer() {
+            return "handler:" + name;
+        }
+    }
+}
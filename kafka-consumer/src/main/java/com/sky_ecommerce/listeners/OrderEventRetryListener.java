@@ -0,0 +1,80 @@
+package com.sky_ecommerce.listeners;
+
+import com.sky_ecommerce.common.EnvelopeCodec;
+import com.sky_ecommerce.common.EventEnvelope;
+import com.sky_ecommerce.common.EventHeaders;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Set;
+
+/**
+ * Consumes the order.events retry stages (see RetryTopics), one container per stage so a long delay
+ * never holds up a shorter one. A record that is not yet due is nacked for the remaining time: the
+ * container pauses and redelivers it then, so only this stage waits. Once due, the record goes to the
+ * handlers that failed it (the dispatchHandlers header, else the handler of the group it failed in);
+ * if it fails again the error handler moves it to the next stage, and after the last one to the DLT.
+ */
+@Service
+public class OrderEventRetryListener {
+
+    private final OrderEventHandlers handlers;
+    private final EnvelopeCodec envelopeCodec;
+
+    public OrderEventRetryListener(OrderEventHandlers handlers, EnvelopeCodec envelopeCodec) {
+        this.handlers = handlers;
+        this.envelopeCodec = envelopeCodec;
+    }
+
+    // topic suffixes must match RetryTopics.DELAYS
+
+    @KafkaListener(
+            id = "order-events-retry-1s",
+            topics = "${topics.order-events:order.events}.retry-1s",
+            groupId = "order-events-retry-1s",
+            containerFactory = "ecommerceKafkaListenerContainerFactory"
+    )
+    public void onRetry1s(ConsumerRecord<String, byte[]> record, Acknowledgment ack) {
+        retry(record, ack);
+    }
+
+    @KafkaListener(
+            id = "order-events-retry-10s",
+            topics = "${topics.order-events:order.events}.retry-10s",
+            groupId = "order-events-retry-10s",
+            containerFactory = "ecommerceKafkaListenerContainerFactory"
+    )
+    public void onRetry10s(ConsumerRecord<String, byte[]> record, Acknowledgment ack) {
+        retry(record, ack);
+    }
+
+    @KafkaListener(
+            id = "order-events-retry-60s",
+            topics = "${topics.order-events:order.events}.retry-60s",
+            groupId = "order-events-retry-60s",
+            containerFactory = "ecommerceKafkaListenerContainerFactory"
+    )
+    public void onRetry60s(ConsumerRecord<String, byte[]> record, Acknowledgment ack) {
+        retry(record, ack);
+    }
+
+    private void retry(ConsumerRecord<String, byte[]> record, Acknowledgment ack) {
+        String dueAt = EventHeaders.read(record.headers(), EventHeaders.RETRY_DUE_AT);
+        long wait = dueAt == null ? 0 : Long.parseLong(dueAt) - System.currentTimeMillis();
+        if (wait > 0) {
+            ack.nack(Duration.ofMillis(wait));
+            return;
+        }
+
+        String targets = EventHeaders.read(record.headers(), EventHeaders.DISPATCH_HANDLERS);
+        Set<String> only = targets != null
+                ? Set.of(targets.split(","))
+                : handlers.forGroup(EventHeaders.read(record.headers(), EventHeaders.RETRY_GROUP));
+        EventEnvelope<?> env = envelopeCodec.decodeLazy(record.value());
+        handlers.dispatch(env, only);
+        ack.acknowledge();
+    }
+}
@@ -1,5 +1,6 @@
 package com.sky_ecommerce.order.domain;
 
+import com.sky_ecommerce.common.AssignedIdEntity;
 import jakarta.persistence.*;
 import java.math.BigDecimal;
 import java.util.ArrayList;
@@ -7,7 +8,7 @@ import java.util.List;
 
 @Entity
 @Table(name = "orders")
-public class Order {
+public class Order extends AssignedIdEntity {
 
     @Id
     @Column(length = 64)
@@ -46,6 +47,7 @@ public class Order {
         public void setPrice(BigDecimal price) { this.price = price; }
     }
 
+    @Override
     public String getId() { return id; }
     public String getCustomerId() { return customerId; }
     public BigDecimal getTotal() { return total; }
@@ -2,39 +2,79 @@ package com.sky_ecommerce.order.service;
 
 import com.sky_ecommerce.common.EventEnvelope;
 import com.sky_ecommerce.common.EventEnvelopeFactory;
+import com.sky_ecommerce.common.GroupCommitExecutor;
+import com.sky_ecommerce.common.UuidV7;
 import com.sky_ecommerce.order.api.CreateOrderRequest;
 import com.sky_ecommerce.order.domain.Order;
 import com.sky_ecommerce.order.domain.OrderRepository;
+import com.sky_ecommerce.order.service.events.OrderEvents;
 import com.sky_ecommerce.outbox.OutboxService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
-import java.util.UUID;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 public class OrderService {
 
+    private static final Logger log = LoggerFactory.getLogger(OrderService.class);
+    private static final String SOURCE = "order-service";
+
     private final OrderRepository orderRepository;
     private final OutboxService outboxService;
     private final EventEnvelopeFactory envelopeFactory;
+    private final GroupCommitExecutor groupCommit;
 
     @Value("${topics.order-events:order.events}")
     private String orderTopic;
 
     public OrderService(OrderRepository orderRepository,
                         OutboxService outboxService,
-                        EventEnvelopeFactory envelopeFactory) {
+                        EventEnvelopeFactory envelopeFactory,
+                        GroupCommitExecutor groupCommit) {
         this.orderRepository = orderRepository;
         this.outboxService = outboxService;
         this.envelopeFactory = envelopeFactory;
+        this.groupCommit = groupCommit;
     }
 
-    @Transactional
+    // Each operation runs in one transaction; with group-commit enabled, concurrent calls share it.
+
     public String createOrder(CreateOrderRequest req, String correlationId) {
+        return groupCommit.execute(() -> doCreateOrder(req, correlationId));
+    }
+
+    public void markPaid(String orderId, String correlationId) {
+        groupCommit.execute(() -> doMarkPaid(orderId, correlationId));
+    }
+
+    public void cancel(String orderId, String correlationId, String reason) {
+        groupCommit.execute(() -> doCancel(orderId, correlationId, reason));
+    }
+
+    /** Outcome of one payment attempt, applied in bulk by {@link #applyPayments(List)}; eventId is the triggering event. */
+    public record PaymentOutcome(String orderId, String eventId, String correlationId, boolean paid, String reason) {}
+
+    /**
+     * Applies a batch of payment outcomes in one transaction: all orders are loaded with a single IN query
+     * and the status updates and outbox rows are flushed together as JDBC batches. Outcomes for unknown
+     * orders are skipped.
+     */
+    public void applyPayments(List<PaymentOutcome> outcomes) {
+        if (!outcomes.isEmpty()) {
+            groupCommit.execute(() -> doApplyPayments(outcomes));
+        }
+    }
+
+    private String doCreateOrder(CreateOrderRequest req, String correlationId) {
         Order order = new Order();
-        String orderId = UUID.randomUUID().toString();
+        String orderId = UuidV7.next();
         order.setId(orderId);
         order.setCustomerId(req.getCustomerId());
         order.setItems(req.getItems().stream().map(li -> {
@@ -57,51 +97,76 @@ public class OrderService {
 
         EventEnvelope<com.sky_ecommerce.order.service.events.OrderEvents.OrderCreated> env = envelopeFactory.create(
                 "OrderCreated",         // eventType
-                "v1",                   // eventVersion
-                "ORDER",                // aggregateType
-                order.getId(),          // aggregateId
-                1,                      // sequence
+                order.getId(),          // subjectId
+                SOURCE,                 // source
+                correlationId,          // correlationId
+                OrderEvents.SCHEMA_VERSION,
                 payload                 // payload
         );
         outboxService.append(orderTopic, order.getId(), env);
         return orderId;
     }
 
-    @Transactional
-    public void markPaid(String orderId, String correlationId) {
+    private void doMarkPaid(String orderId, String correlationId) {
         Order order = orderRepository.findById(orderId).orElseThrow();
         order.setStatus(Order.Status.PAID);
         orderRepository.save(order);
+        appendPaid(orderId, correlationId);
+    }
 
+    private void doCancel(String orderId, String correlationId, String reason) {
+        Order order = orderRepository.findById(orderId).orElseThrow();
+        order.setStatus(Order.Status.CANCELLED);
+        orderRepository.save(order);
+        appendCancelled(orderId, correlationId, reason);
+    }
+
+    private void doApplyPayments(List<PaymentOutcome> outcomes) {
+        Map<String, Order> orders = orderRepository.findAllById(outcomes.stream().map(PaymentOutcome::orderId).toList())
+                .stream()
+                .collect(Collectors.toMap(Order::getId, Function.identity()));
+        for (PaymentOutcome outcome : outcomes) {
+            Order order = orders.get(outcome.orderId());
+            if (order == null) {
+                log.warn("Skipping payment outcome for unknown order {}", outcome.orderId());
+                continue;
+            }
+            // managed entities: the status changes are flushed as batched UPDATEs on commit
+            if (outcome.paid()) {
+                order.setStatus(Order.Status.PAID);
+                appendPaid(outcome.orderId(), outcome.correlationId());
+            } else {
+                order.setStatus(Order.Status.CANCELLED);
+                appendCancelled(outcome.orderId(), outcome.correlationId(), outcome.reason());
+            }
+        }
+    }
+
+    private void appendPaid(String orderId, String correlationId) {
         com.sky_ecommerce.order.service.events.OrderEvents.OrderPaid payload =
                 new com.sky_ecommerce.order.service.events.OrderEvents.OrderPaid(orderId);
 
         EventEnvelope<com.sky_ecommerce.order.service.events.OrderEvents.OrderPaid> env = envelopeFactory.create(
                 "OrderPaid",            // eventType
-                "v1",                   // eventVersion
-                "ORDER",                // aggregateType
-                orderId,                // aggregateId
-                1,                      // sequence
+                orderId,                // subjectId
+                SOURCE,                 // source
+                correlationId,          // correlationId
+                OrderEvents.SCHEMA_VERSION,
                 payload                 // payload
         );
         outboxService.append(orderTopic, orderId, env);
     }
 
-    @Transactional
-    public void cancel(String orderId, String correlationId, String reason) {
-        Order order = orderRepository.findById(orderId).orElseThrow();
-        order.setStatus(Order.Status.CANCELLED);
-        orderRepository.save(order);
-
+    private void appendCancelled(String orderId, String correlationId, String reason) {
         com.sky_ecommerce.order.service.events.OrderEvents.OrderCancelled payload =
                 new com.sky_ecommerce.order.service.events.OrderEvents.OrderCancelled(orderId, reason);
 
         EventEnvelope<com.sky_ecommerce.order.service.events.OrderEvents.OrderCancelled> env = envelopeFactory.create(
                 "OrderCancelled",       // eventType
-                "v1",                   // eventVersion
-                "ORDER",                // aggregateType
-                orderId,                // aggregateId
-                1,                      // sequence
+                orderId,                // subjectId
+                SOURCE,                 // source
+                correlationId,          // correlationId
+                OrderEvents.SCHEMA_VERSION,
                 payload                 // payload
         );
         outboxService.append(orderTopic, orderId, env);
@@ -6,6 +6,10 @@ import java.math.BigDecimal;
 // These are simple POJOs used as Kafka payloads for Order domain events.
 public final class OrderEvents {
 
+    // Current payload schema version of the classes below. Bump it when a payload changes shape and
+    // register an EventUpcaster from the previous version, so older records still bind.
+    public static final int SCHEMA_VERSION = 1;
+
     private OrderEvents() {
         // utility holder
     }
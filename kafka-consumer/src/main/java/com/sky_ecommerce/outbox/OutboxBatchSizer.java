@@ -0,0 +1,52 @@
+package com.sky_ecommerce.outbox;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Adapts the relay batch size to backlog and producer feedback (multiplicative increase by 1.25,
+ * multiplicative decrease by 2, so the size recovers from a halving in about three full batches).
+ * A batch that came back full means the backlog is deeper than one batch: grow by a quarter if the
+ * producer kept up. Any send failure, or a batch slower than the latency target, halves the size.
+ */
+@Component
+public class OutboxBatchSizer {
+
+    private final int min;
+    private final int max;
+    private final long targetLatencyMs;
+    private final AtomicInteger current;
+
+    public OutboxBatchSizer(@Value("${outbox.relay.batch-size:50}") int initial,
+                            @Value("${outbox.relay.batch-min:10}") int min,
+                            @Value("${outbox.relay.batch-max:1000}") int max,
+                            @Value("${outbox.relay.target-latency-ms:500}") long targetLatencyMs) {
+        this.min = Math.max(1, min);
+        this.max = Math.max(this.min, max);
+        this.targetLatencyMs = targetLatencyMs;
+        this.current = new AtomicInteger(Math.min(this.max, Math.max(this.min, initial)));
+    }
+
+    public int current() {
+        return current.get();
+    }
+
+    /**
+     * @param claimed   rows claimed for the batch
+     * @param failed    rows whose send failed
+     * @param elapsedMs claim-to-acknowledge time of the batch
+     */
+    public void record(int claimed, int failed, long elapsedMs) {
+        current.updateAndGet(size -> {
+            if (failed > 0 || elapsedMs > targetLatencyMs) {
+                return Math.max(min, size / 2);
+            }
+            if (claimed >= size) {
+                return Math.min(max, size + Math.max(1, size / 4));
+            }
+            return size;
+        });
+    }
+}
@@ -0,0 +1,71 @@
+package com.sky_ecommerce.outbox;
+
+import java.io.ByteArrayOutputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Storage codec for outbox envelope bytes, recorded per row in the codec column.
+ * Only affects how rows sit in the database; the relay always publishes the decoded bytes.
+ */
+public enum OutboxCodec {
+
+    NONE {
+        @Override
+        public byte[] encode(byte[] raw, int level) { return raw; }
+
+        @Override
+        public byte[] decode(byte[] stored) { return stored; }
+    },
+
+    DEFLATE {
+        @Override
+        public byte[] encode(byte[] raw, int level) {
+            Deflater deflater = new Deflater(level);
+            try {
+                deflater.setInput(raw);
+                deflater.finish();
+                ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 2 + 16);
+                byte[] buf = new byte[4096];
+                while (!deflater.finished()) {
+                    out.write(buf, 0, deflater.deflate(buf));
+                }
+                return out.toByteArray();
+            } finally {
+                deflater.end();
+            }
+        }
+
+        @Override
+        public byte[] decode(byte[] stored) {
+            Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(stored);
+                ByteArrayOutputStream out = new ByteArrayOutputStream(stored.length * 4);
+                byte[] buf = new byte[4096];
+                while (!inflater.finished()) {
+                    int n = inflater.inflate(buf);
+                    if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        throw new IllegalStateException("Truncated deflate payload");
+                    }
+                    out.write(buf, 0, n);
+                }
+                return out.toByteArray();
+            } catch (DataFormatException e) {
+                throw new IllegalStateException("Corrupt deflate payload", e);
+            } finally {
+                inflater.end();
+            }
+        }
+    };
+
+    public abstract byte[] encode(byte[] raw, int level);
+
+    public abstract byte[] decode(byte[] stored);
+
+    // Rows written before the codec column existed have no marker and are uncompressed
+    public static OutboxCodec of(String marker) {
+        return marker == null ? NONE : valueOf(marker);
+    }
+}
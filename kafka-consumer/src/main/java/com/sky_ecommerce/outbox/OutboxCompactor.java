@@ -0,0 +1,216 @@
+package com.sky_ecommerce.outbox;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Deletes SENT outbox rows older than the retention window, optionally archiving them first to a
+ * gzip'd JSON-lines file. Works in small chunks, each deleted in its own short transaction, so it
+ * never holds locks the relay would wait on. Envelopes are only fetched when they are archived.
+ */
+@Component
+public class OutboxCompactor {
+
+    private static final Logger log = LoggerFactory.getLogger(OutboxCompactor.class);
+    private static final DateTimeFormatter FILE_TS = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss").withZone(ZoneOffset.UTC);
+
+    private final OutboxRepository repository;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final OutboxCoordinator coordinator;
+
+    private final boolean enabled;
+    private final Duration retention;
+    private final int chunkSize;
+    private final String archiveDir;
+
+    private final Counter rowsReclaimed;
+    private final Counter bytesReclaimed;
+    private final Counter rowsArchived;
+    private final Timer runTimer;
+
+    public OutboxCompactor(OutboxRepository repository,
+                           ObjectMapper objectMapper,
+                           PlatformTransactionManager transactionManager,
+                           MeterRegistry meterRegistry,
+                           OutboxCoordinator coordinator,
+                           @Value("${outbox.retention.enabled:true}") boolean enabled,
+                           @Value("${outbox.retention.sent-retention:P7D}") Duration retention,
+                           @Value("${outbox.retention.chunk-size:500}") int chunkSize,
+                           @Value("${outbox.retention.archive-dir:}") String archiveDir) {
+        this.repository = repository;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.coordinator = coordinator;
+        this.enabled = enabled;
+        this.retention = retention;
+        this.chunkSize = chunkSize;
+        this.archiveDir = archiveDir;
+
+        this.rowsReclaimed = Counter.builder("outbox.compaction.rows")
+                .description("SENT outbox rows deleted by the compactor")
+                .register(meterRegistry);
+        this.bytesReclaimed = Counter.builder("outbox.compaction.bytes")
+                .description("Envelope bytes freed by the compactor")
+                .baseUnit(BaseUnits.BYTES)
+                .register(meterRegistry);
+        this.rowsArchived = Counter.builder("outbox.compaction.archived")
+                .description("Outbox rows written to the archive before deletion")
+                .register(meterRegistry);
+        this.runTimer = Timer.builder("outbox.compaction.duration")
+                .description("Time taken by one compaction run")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(scheduler = "outboxTaskScheduler",
+            fixedDelayString = "${outbox.retention.interval-ms:600000}",
+            initialDelayString = "${outbox.retention.initial-delay-ms:60000}")
+    public void compact() {
+        // one compactor per cluster: only the relay leader runs it
+        if (!enabled || !coordinator.isLeader()) {
+            return;
+        }
+        try {
+            runTimer.record(this::compactOnce);
+        } catch (Exception e) {
+            log.error("Outbox compaction failed", e);
+        }
+    }
+
+    /**
+     * Runs chunks until no SENT row is older than the retention window.
+     *
+     * @return rows deleted
+     */
+    public long compactOnce() {
+        Instant cutoff = Instant.now().minus(retention);
+        long total = 0;
+        try (ArchiveWriter archive = archiveDir.isBlank() ? null : new ArchiveWriter(Path.of(archiveDir))) {
+            int deleted;
+            do {
+                deleted = compactChunk(cutoff, archive);
+                total += deleted;
+            } while (deleted == chunkSize);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write outbox archive", e);
+        }
+        if (total > 0) {
+            log.info("Outbox compaction removed {} SENT rows older than {}", total, cutoff);
+        }
+        return total;
+    }
+
+    private int compactChunk(Instant cutoff, ArchiveWriter archive) {
+        return archive == null ? deleteChunk(cutoff) : archiveAndDeleteChunk(cutoff, archive);
+    }
+
+    private int deleteChunk(Instant cutoff) {
+        Integer deleted = transactionTemplate.execute(status -> {
+            List<Object[]> chunk = repository.findSentSizesBefore(cutoff, chunkSize);
+            if (chunk.isEmpty()) {
+                return 0;
+            }
+            List<String> ids = new ArrayList<>(chunk.size());
+            long bytes = 0;
+            for (Object[] row : chunk) {
+                ids.add((String) row[0]);
+                bytes += row[1] == null ? 0 : ((Number) row[1]).longValue();
+            }
+            repository.deleteAllByIdInBatch(ids);
+            rowsReclaimed.increment(ids.size());
+            bytesReclaimed.increment(bytes);
+            return ids.size();
+        });
+        return deleted == null ? 0 : deleted;
+    }
+
+    private int archiveAndDeleteChunk(Instant cutoff, ArchiveWriter archive) {
+        // SENT rows no longer change, so they are read and archived outside any transaction and only the
+        // delete holds locks. A failed delete can only duplicate archive lines on the next run, never lose rows
+        List<OutboxEntity> chunk = repository.findSentBefore(cutoff, PageRequest.of(0, chunkSize));
+        if (chunk.isEmpty()) {
+            return 0;
+        }
+        archive.write(chunk);
+        rowsArchived.increment(chunk.size());
+        long bytes = 0;
+        for (OutboxEntity e : chunk) {
+            bytes += e.getEnvelope().length;
+        }
+        List<String> ids = chunk.stream().map(OutboxEntity::getId).toList();
+        transactionTemplate.executeWithoutResult(status -> repository.deleteAllByIdInBatch(ids));
+        rowsReclaimed.increment(chunk.size());
+        bytesReclaimed.increment(bytes);
+        return chunk.size();
+    }
+
+    private class ArchiveWriter implements AutoCloseable {
+        private final Path file;
+        private BufferedWriter out;
+
+        ArchiveWriter(Path dir) {
+            this.file = dir.resolve("outbox-archive-" + FILE_TS.format(Instant.now()) + ".jsonl.gz");
+        }
+
+        void write(List<OutboxEntity> rows) {
+            try {
+                if (out == null) {
+                    Files.createDirectories(file.getParent());
+                    out = new BufferedWriter(new OutputStreamWriter(
+                            new GZIPOutputStream(Files.newOutputStream(file)), StandardCharsets.UTF_8));
+                }
+                for (OutboxEntity e : rows) {
+                    Map<String, Object> line = new LinkedHashMap<>();
+                    line.put("id", e.getId());
+                    line.put("topic", e.getTopic());
+                    line.put("key", e.getKey());
+                    line.put("createdAt", e.getCreatedAt().toString());
+                    line.put("sentAt", e.getSentAt().toString());
+                    line.put("codec", OutboxCodec.of(e.getCodec()).name());
+                    line.put("envelope", e.getEnvelope()); // base64 of the stored (possibly compressed) bytes
+                    out.write(objectMapper.writeValueAsString(line));
+                    out.newLine();
+                }
+                out.flush();
+            } catch (IOException ex) {
+                throw new UncheckedIOException("Failed to write outbox archive " + file, ex);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (out != null) {
+                out.close();
+                log.info("Outbox rows archived to {}", file);
+            }
+        }
+    }
+}
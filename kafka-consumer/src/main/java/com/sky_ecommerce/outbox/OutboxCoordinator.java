@@ -0,0 +1,215 @@
+package com.sky_ecommerce.outbox;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Splits outbox relay work across replicas.
+ *
+ * Every row carries a key bucket (hash of its message key, 0..{@link #BUCKETS}-1). Each node heartbeats
+ * into outbox_relay_nodes; the node holding the "outbox-relay" lease is leader and divides the bucket
+ * space into contiguous ranges, one per live node. A node only claims rows in its own range, so
+ * replicas never compete for the same rows and a key is always relayed by one node.
+ * The lease is short, so when the leader dies another node takes over within one lease period and
+ * reassigns the dead node's range. The leader also runs the singleton outbox jobs (compaction).
+ *
+ * Buckets that move to a node are handed over, not taken at once: their previous owner may still hold
+ * row leases there and keeps claiming until its next heartbeat, so the new owner leaves them alone for
+ * one heartbeat plus one row lease (outbox.relay.lease-ms).
+ */
+@Component
+public class OutboxCoordinator {
+
+    public static final int BUCKETS = 1024;
+
+    private static final Logger log = LoggerFactory.getLogger(OutboxCoordinator.class);
+    private static final String LEASE = "outbox-relay";
+
+    private final OutboxRelayNodeRepository nodes;
+    private final OutboxRelayLeaseRepository leases;
+    private final TransactionTemplate transactionTemplate;
+    private final OutboxRelaySignal relaySignal;
+    private final String nodeId;
+    private final boolean enabled;
+    private final long nodeTtlMs;
+    private final long leaseMs;
+    private final long handoverMs;
+
+    private volatile boolean leader;
+    // assigned by the leader; claimable is the part of it not still being handed over
+    private volatile int[] range = {0, 0};
+    private volatile int[] claimable = {0, 0};
+    private volatile Instant handoverUntil = Instant.EPOCH;
+
+    public OutboxCoordinator(OutboxRelayNodeRepository nodes,
+                             OutboxRelayLeaseRepository leases,
+                             PlatformTransactionManager transactionManager,
+                             OutboxRelaySignal relaySignal,
+                             OutboxNode node,
+                             @Value("${outbox.cluster.enabled:true}") boolean enabled,
+                             @Value("${outbox.cluster.node-ttl-ms:6000}") long nodeTtlMs,
+                             @Value("${outbox.cluster.lease-ms:5000}") long leaseMs,
+                             @Value("${outbox.cluster.heartbeat-ms:2000}") long heartbeatMs,
+                             @Value("${outbox.relay.lease-ms:30000}") long rowLeaseMs) {
+        this.nodes = nodes;
+        this.leases = leases;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.relaySignal = relaySignal;
+        this.nodeId = node.getId();
+        this.enabled = enabled;
+        this.nodeTtlMs = nodeTtlMs;
+        this.leaseMs = leaseMs;
+        this.handoverMs = heartbeatMs + rowLeaseMs;
+        if (!enabled) {
+            // single-relay deployment: own every bucket, act as leader
+            this.leader = true;
+            this.range = new int[]{0, BUCKETS};
+            this.claimable = this.range;
+        }
+    }
+
+    public static int bucketOf(String key) {
+        return Math.floorMod(key.hashCode(), BUCKETS);
+    }
+
+    public boolean isLeader() {
+        return leader;
+    }
+
+    /**
+     * The bucket range this node may claim from, as {from inclusive, to exclusive}: its assigned range, less
+     * any buckets still being handed over to it. Empty until the leader assigns one.
+     */
+    public int[] range() {
+        return claimable;
+    }
+
+    @Scheduled(scheduler = "outboxTaskScheduler", fixedDelayString = "${outbox.cluster.heartbeat-ms:2000}")
+    public void heartbeat() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            ensureRows();
+            transactionTemplate.executeWithoutResult(status -> {
+                Instant now = Instant.now();
+                nodes.heartbeat(nodeId, now);
+                boolean wasLeader = leader;
+                leader = leases.tryAcquire(LEASE, nodeId, now, now.plusMillis(leaseMs)) == 1;
+                if (leader != wasLeader) {
+                    log.info("Outbox relay node {} {} leadership", nodeId, leader ? "acquired" : "lost");
+                }
+                if (leader) {
+                    assign(now);
+                }
+            });
+            nodes.findById(nodeId).ifPresent(n -> {
+                if (n.getBucketFrom() != range[0] || n.getBucketTo() != range[1]) {
+                    reassigned(new int[]{n.getBucketFrom(), n.getBucketTo()});
+                }
+            });
+            if (!Arrays.equals(claimable, range) && !Instant.now().isBefore(handoverUntil)) {
+                claimable = range;
+                // newly owned buckets may already hold a backlog
+                relaySignal.wakeUp();
+            }
+        } catch (Exception e) {
+            // the lease may have expired meanwhile, so stop acting as leader (e.g. compaction) until the
+            // next heartbeat re-acquires it; keep the last known range: the leases on claimed rows still
+            // prevent double sends
+            if (leader) {
+                log.info("Outbox relay node {} lost leadership (heartbeat failed)", nodeId);
+            }
+            leader = false;
+            log.warn("Outbox relay heartbeat failed: {}", e.getMessage());
+        }
+    }
+
+    // Keeps claiming only the buckets this node could already claim; the rest of the new range waits
+    // out the handover. A range that only shrinks applies at once
+    private void reassigned(int[] assigned) {
+        int from = Math.max(claimable[0], assigned[0]);
+        int to = Math.min(claimable[1], assigned[1]);
+        int[] kept = from < to ? new int[]{from, to} : new int[]{0, 0};
+        if (Arrays.equals(kept, assigned)) {
+            claimable = assigned;
+        } else {
+            claimable = kept;
+            handoverUntil = Instant.now().plusMillis(handoverMs);
+            log.info("Outbox relay node {} takes over buckets [{}, {}) after {} ms",
+                    nodeId, assigned[0], assigned[1], handoverMs);
+        }
+        range = assigned;
+    }
+
+    // Leader only: divide the bucket space evenly over live nodes, in node-id order
+    private void assign(Instant now) {
+        Instant liveAfter = now.minusMillis(nodeTtlMs);
+        nodes.deleteStale(now.minusMillis(nodeTtlMs * 10));
+        List<OutboxRelayNode> all = nodes.findAllByOrderByNodeIdAsc();
+        List<OutboxRelayNode> live = all.stream().filter(n -> n.getHeartbeatAt().isAfter(liveAfter)).toList();
+        for (OutboxRelayNode n : all) {
+            int i = live.indexOf(n);
+            int from = i < 0 ? 0 : BUCKETS * i / live.size();
+            int to = i < 0 ? 0 : BUCKETS * (i + 1) / live.size();
+            if (n.getBucketFrom() != from || n.getBucketTo() != to) {
+                log.info("Outbox relay node {} assigned buckets [{}, {})", n.getNodeId(), from, to);
+                nodes.assign(n.getNodeId(), from, to);
+            }
+        }
+    }
+
+    // Inserts are done in their own transactions so a concurrent insert by another node is harmless
+    private void ensureRows() {
+        if (!nodes.existsById(nodeId)) {
+            insertQuietly(() -> {
+                OutboxRelayNode n = new OutboxRelayNode();
+                n.setNodeId(nodeId);
+                n.setHeartbeatAt(Instant.now());
+                nodes.save(n);
+            });
+        }
+        if (!leases.existsById(LEASE)) {
+            insertQuietly(() -> {
+                OutboxRelayLease l = new OutboxRelayLease();
+                l.setName(LEASE);
+                l.setExpiresAt(Instant.EPOCH);
+                leases.save(l);
+            });
+        }
+    }
+
+    private void insertQuietly(Runnable insert) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> insert.run());
+        } catch (Exception e) {
+            log.debug("Outbox coordination row already created: {}", e.getMessage());
+        }
+    }
+
+    // Graceful shutdown hands over immediately instead of waiting for the lease and heartbeat to expire
+    @PreDestroy
+    void leave() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                nodes.deleteById(nodeId);
+                leases.release(LEASE, nodeId);
+            });
+        } catch (Exception e) {
+            log.warn("Outbox relay node {} could not leave cleanly: {}", nodeId, e.getMessage());
+        }
+    }
+}
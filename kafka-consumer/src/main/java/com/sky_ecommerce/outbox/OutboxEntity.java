@@ -1,11 +1,16 @@
 package com.sky_ecommerce.outbox;
 
+import com.sky_ecommerce.common.AssignedIdEntity;
 import jakarta.persistence.*;
 import java.time.Instant;
 
 @Entity
-@Table(name = "outbox")
-public class OutboxEntity {
+@Table(name = "outbox", indexes = {
+        @Index(name = "idx_outbox_status_next_attempt", columnList = "status, nextAttemptAt"),
+        @Index(name = "idx_outbox_status_sent_at", columnList = "status, sentAt"),
+        @Index(name = "idx_outbox_key_created_at", columnList = "message_key, createdAt")
+})
+public class OutboxEntity extends AssignedIdEntity {
 
     @Id
     @Column(length = 64)
@@ -18,9 +23,25 @@ public class OutboxEntity {
     @Column(name = "message_key", nullable = false, length = 200)
     private String key; // partitioning key, e.g., orderId
 
-    @Lob
-    @Column(nullable = false)
-    private String envelopeJson;
+    // OutboxCoordinator.bucketOf(key): decides which relay node owns the row
+    private Integer keyBucket;
+
+    // Serialized EventEnvelope exactly as it goes on the wire; the relay never parses it
+    @Column(name = "envelope", nullable = false, length = 1048576)
+    private byte[] envelope;
+
+    // OutboxCodec used for envelope; null means NONE
+    @Column(length = 16)
+    private String codec;
+
+    // Envelope fields published as Kafka headers, so consumers can filter without decoding the value
+    @Column(length = 100)
+    private String eventType;
+
+    private Integer schemaVersion;
+
+    @Column(length = 64)
+    private String correlationId;
 
     @Column(nullable = false)
     private Instant createdAt;
@@ -33,21 +54,47 @@ public class OutboxEntity {
     @Column(nullable = false, length = 32)
     private String status; // PENDING, SENT, FAILED
 
+    // Earliest time the relay may (re)try this row; pushed out with backoff after each failure
+    private Instant nextAttemptAt;
+
+    // Relay lease: the node currently sending this row and until when it holds it
+    @Column(length = 100)
+    private String leaseOwner;
+
+    private Instant leaseUntil;
+
+    @Override
     public String getId() { return id; }
     public String getTopic() { return topic; }
     public String getKey() { return key; }
-    public String getEnvelopeJson() { return envelopeJson; }
+    public Integer getKeyBucket() { return keyBucket; }
+    public byte[] getEnvelope() { return envelope; }
+    public String getCodec() { return codec; }
+    public String getEventType() { return eventType; }
+    public Integer getSchemaVersion() { return schemaVersion; }
+    public String getCorrelationId() { return correlationId; }
     public Instant getCreatedAt() { return createdAt; }
     public Instant getSentAt() { return sentAt; }
     public Integer getAttempts() { return attempts; }
     public String getStatus() { return status; }
+    public Instant getNextAttemptAt() { return nextAttemptAt; }
+    public String getLeaseOwner() { return leaseOwner; }
+    public Instant getLeaseUntil() { return leaseUntil; }
 
     public void setId(String id) { this.id = id; }
     public void setTopic(String topic) { this.topic = topic; }
     public void setKey(String key) { this.key = key; }
-    public void setEnvelopeJson(String envelopeJson) { this.envelopeJson = envelopeJson; }
+    public void setKeyBucket(Integer keyBucket) { this.keyBucket = keyBucket; }
+    public void setEnvelope(byte[] envelope) { this.envelope = envelope; }
+    public void setCodec(String codec) { this.codec = codec; }
+    public void setEventType(String eventType) { this.eventType = eventType; }
+    public void setSchemaVersion(Integer schemaVersion) { this.schemaVersion = schemaVersion; }
+    public void setCorrelationId(String correlationId) { this.correlationId = correlationId; }
     public void setCreatedAt(Instant createdAt) { this.createdAt = createdAt; }
     public void setSentAt(Instant sentAt) { this.sentAt = sentAt; }
     public void setAttempts(Integer attempts) { this.attempts = attempts; }
     public void setStatus(String status) { this.status = status; }
+    public void setNextAttemptAt(Instant nextAttemptAt) { this.nextAttemptAt = nextAttemptAt; }
+    public void setLeaseOwner(String leaseOwner) { this.leaseOwner = leaseOwner; }
+    public void setLeaseUntil(Instant leaseUntil) { this.leaseUntil = leaseUntil; }
 }
@@ -0,0 +1,145 @@
+package com.sky_ecommerce.outbox;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.MultiGauge;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Micrometer meters describing whether the outbox relay keeps up (exported via /actuator/prometheus).
+ * Backlog figures come from the database and are refreshed on a schedule, never on scrape;
+ * relay throughput, latency and failures are recorded by {@link OutboxService} as it sends.
+ */
+@Component
+public class OutboxMetrics {
+
+    private static final Logger log = LoggerFactory.getLogger(OutboxMetrics.class);
+
+    private final OutboxRepository repository;
+    private final MeterRegistry meterRegistry;
+
+    private final AtomicLong backlog = new AtomicLong();
+    private final AtomicLong parked = new AtomicLong();
+    private final AtomicReference<Instant> oldestPending = new AtomicReference<>();
+    private final MultiGauge backlogByTopic;
+
+    private final Timer batchDuration;
+    private final Counter relayErrors;
+    private final Map<String, TopicMeters> topicMeters = new ConcurrentHashMap<>();
+
+    public OutboxMetrics(OutboxRepository repository, OutboxBatchSizer batchSizer, MeterRegistry meterRegistry) {
+        this.repository = repository;
+        this.meterRegistry = meterRegistry;
+
+        Gauge.builder("outbox.relay.batch.size", batchSizer, OutboxBatchSizer::current)
+                .description("Current adaptive relay batch size")
+                .register(meterRegistry);
+        Gauge.builder("outbox.backlog", backlog, AtomicLong::get)
+                .description("PENDING outbox rows")
+                .register(meterRegistry);
+        Gauge.builder("outbox.backlog.oldest.age", this, OutboxMetrics::oldestPendingAgeSeconds)
+                .description("Age of the oldest PENDING outbox row")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+        Gauge.builder("outbox.failed", parked, AtomicLong::get)
+                .description("Outbox rows parked as FAILED after exhausting retries")
+                .register(meterRegistry);
+        this.backlogByTopic = MultiGauge.builder("outbox.backlog.topic")
+                .description("PENDING outbox rows per topic")
+                .register(meterRegistry);
+
+        this.batchDuration = Timer.builder("outbox.relay.batch.duration")
+                .description("Claim-to-acknowledge time of one relay batch")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.relayErrors = Counter.builder("outbox.relay.errors")
+                .description("Relay passes aborted by an unexpected error")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(scheduler = "outboxTaskScheduler", fixedDelayString = "${outbox.metrics.refresh-ms:5000}")
+    public void refresh() {
+        try {
+            List<Object[]> perTopic = repository.countPendingByTopic();
+            long total = 0;
+            for (Object[] row : perTopic) {
+                total += ((Number) row[1]).longValue();
+            }
+            List<MultiGauge.Row<?>> rows = new ArrayList<>(perTopic.size());
+            for (Object[] row : perTopic) {
+                rows.add(MultiGauge.Row.of(Tags.of("topic", (String) row[0]), ((Number) row[1]).longValue()));
+            }
+            backlogByTopic.register(rows, true);
+            backlog.set(total);
+            parked.set(repository.countByStatus("FAILED"));
+            oldestPending.set(repository.findOldestPendingCreatedAt());
+        } catch (Exception e) {
+            log.warn("Outbox metrics refresh failed: {}", e.getMessage());
+        }
+    }
+
+    public void recordSent(String topic, long latencyNanos) {
+        TopicMeters m = meters(topic);
+        m.sent.increment();
+        m.latency.record(latencyNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordFailed(String topic) {
+        meters(topic).failed.increment();
+    }
+
+    public void recordBatch(long durationNanos) {
+        batchDuration.record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordRelayError() {
+        relayErrors.increment();
+    }
+
+    private TopicMeters meters(String topic) {
+        return topicMeters.computeIfAbsent(topic, t -> new TopicMeters(t, meterRegistry));
+    }
+
+    private double oldestPendingAgeSeconds() {
+        Instant oldest = oldestPending.get();
+        return oldest == null ? 0 : Duration.between(oldest, Instant.now()).toMillis() / 1000.0;
+    }
+
+    private static final class TopicMeters {
+        final Counter sent;
+        final Counter failed;
+        final Timer latency;
+
+        TopicMeters(String topic, MeterRegistry registry) {
+            this.sent = Counter.builder("outbox.relay.sent")
+                    .description("Outbox rows published")
+                    .tag("topic", topic)
+                    .register(registry);
+            this.failed = Counter.builder("outbox.relay.failed")
+                    .description("Outbox send attempts that failed")
+                    .tag("topic", topic)
+                    .register(registry);
+            this.latency = Timer.builder("outbox.relay.send.latency")
+                    .description("Time from handing a row to the producer to the broker ack")
+                    .tag("topic", topic)
+                    .publishPercentileHistogram()
+                    .register(registry);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.sky_ecommerce.outbox;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.InetAddress;
+import java.util.UUID;
+
+/**
+ * Identity of this replica for outbox relay leases and transactional producer ids.
+ * Defaults to hostname plus a random suffix so restarted or co-located instances never collide.
+ */
+@Component
+public class OutboxNode {
+
+    private final String id;
+    private final boolean configured;
+
+    public OutboxNode(@Value("${outbox.relay.node-id:}") String id) {
+        this.configured = !id.isBlank();
+        this.id = configured ? id : defaultId();
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * The configured node id, which must survive restarts. Kafka fences an old producer only when its
+     * successor reuses the same transactional.id, so a random per-boot id would leave a zombie's open
+     * transaction holding the last stable offset (blocking read_committed consumers) until it times out.
+     */
+    public String getStableId() {
+        if (!configured) {
+            throw new IllegalStateException("outbox.relay.transactional requires a stable outbox.relay.node-id "
+                    + "(e.g. the StatefulSet pod name), unique per replica and unchanged across restarts");
+        }
+        return id;
+    }
+
+    private static String defaultId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception ex) {
+            host = "node";
+        }
+        return host + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+}
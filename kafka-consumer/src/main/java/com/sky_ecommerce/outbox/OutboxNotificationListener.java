@@ -0,0 +1,94 @@
+package com.sky_ecommerce.outbox;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.Statement;
+
+/**
+ * Holds one connection in LISTEN on {@link OutboxRelaySignal#CHANNEL} and wakes the local relay
+ * whenever any node commits new outbox rows. Inactive unless the database is PostgreSQL.
+ */
+@Component
+public class OutboxNotificationListener implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(OutboxNotificationListener.class);
+    private static final int POLL_TIMEOUT_MS = 500;
+    private static final long RECONNECT_DELAY_MS = 5000;
+
+    private final DataSource dataSource;
+    private final OutboxRelaySignal signal;
+
+    private volatile boolean running;
+    private Thread thread;
+
+    public OutboxNotificationListener(DataSource dataSource, OutboxRelaySignal signal) {
+        this.dataSource = dataSource;
+        this.signal = signal;
+    }
+
+    @Override
+    public void start() {
+        if (!signal.isCrossNode()) {
+            return;
+        }
+        running = true;
+        thread = new Thread(this::listen, "outbox-notify-listener");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (thread != null) {
+            try {
+                thread.join(POLL_TIMEOUT_MS * 2L);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void listen() {
+        while (running) {
+            try (Connection connection = dataSource.getConnection()) {
+                PGConnection pg = connection.unwrap(PGConnection.class);
+                try (Statement st = connection.createStatement()) {
+                    st.execute("LISTEN " + OutboxRelaySignal.CHANNEL);
+                }
+                log.info("Listening for outbox notifications on '{}'", OutboxRelaySignal.CHANNEL);
+                // rows may have been committed while we were (re)connecting
+                signal.wakeUp();
+                while (running) {
+                    PGNotification[] notifications = pg.getNotifications(POLL_TIMEOUT_MS);
+                    if (notifications != null && notifications.length > 0) {
+                        signal.wakeUp();
+                    }
+                }
+            } catch (Exception e) {
+                if (!running) {
+                    return;
+                }
+                log.warn("Outbox notification listener failed, reconnecting in {} ms: {}", RECONNECT_DELAY_MS, e.getMessage());
+                try {
+                    Thread.sleep(RECONNECT_DELAY_MS);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+}
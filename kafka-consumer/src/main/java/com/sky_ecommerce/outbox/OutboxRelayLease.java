@@ -0,0 +1,30 @@
+package com.sky_ecommerce.outbox;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+
+/**
+ * Named, time-bound lease row used for leader election: whoever holds an unexpired lease is leader.
+ */
+@Entity
+@Table(name = "outbox_relay_lease")
+public class OutboxRelayLease {
+
+    @Id
+    @Column(length = 64)
+    private String name;
+
+    @Column(length = 100)
+    private String owner;
+
+    @Column(nullable = false)
+    private Instant expiresAt;
+
+    public String getName() { return name; }
+    public String getOwner() { return owner; }
+    public Instant getExpiresAt() { return expiresAt; }
+
+    public void setName(String name) { this.name = name; }
+    public void setOwner(String owner) { this.owner = owner; }
+    public void setExpiresAt(Instant expiresAt) { this.expiresAt = expiresAt; }
+}
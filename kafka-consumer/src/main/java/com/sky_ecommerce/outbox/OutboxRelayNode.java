@@ -0,0 +1,36 @@
+package com.sky_ecommerce.outbox;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+
+/**
+ * Live-membership row of one relay replica. The elected leader writes each live node's share of
+ * the key-bucket space into [bucketFrom, bucketTo); nodes only ever touch their own heartbeat.
+ */
+@Entity
+@Table(name = "outbox_relay_nodes")
+public class OutboxRelayNode {
+
+    @Id
+    @Column(length = 100)
+    private String nodeId;
+
+    @Column(nullable = false)
+    private Instant heartbeatAt;
+
+    @Column(nullable = false)
+    private int bucketFrom;
+
+    @Column(nullable = false)
+    private int bucketTo;
+
+    public String getNodeId() { return nodeId; }
+    public Instant getHeartbeatAt() { return heartbeatAt; }
+    public int getBucketFrom() { return bucketFrom; }
+    public int getBucketTo() { return bucketTo; }
+
+    public void setNodeId(String nodeId) { this.nodeId = nodeId; }
+    public void setHeartbeatAt(Instant heartbeatAt) { this.heartbeatAt = heartbeatAt; }
+    public void setBucketFrom(int bucketFrom) { this.bucketFrom = bucketFrom; }
+    public void setBucketTo(int bucketTo) { this.bucketTo = bucketTo; }
+}
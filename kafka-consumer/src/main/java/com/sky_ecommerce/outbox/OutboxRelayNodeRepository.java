@@ -0,0 +1,29 @@
+package com.sky_ecommerce.outbox;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.List;
+
+public interface OutboxRelayNodeRepository extends JpaRepository<OutboxRelayNode, String> {
+
+    // Touches only the heartbeat so it never overwrites an assignment the leader just wrote
+    @Modifying
+    @Query("update OutboxRelayNode n set n.heartbeatAt = :now where n.nodeId = :nodeId")
+    int heartbeat(@Param("nodeId") String nodeId, @Param("now") Instant now);
+
+    // Leader's write of another node's range: touches only the range, so it never overwrites (with a stale
+    // value loaded earlier in the leader's transaction) a heartbeat that node committed meanwhile
+    @Modifying
+    @Query("update OutboxRelayNode n set n.bucketFrom = :bucketFrom, n.bucketTo = :bucketTo where n.nodeId = :nodeId")
+    int assign(@Param("nodeId") String nodeId, @Param("bucketFrom") int bucketFrom, @Param("bucketTo") int bucketTo);
+
+    List<OutboxRelayNode> findAllByOrderByNodeIdAsc();
+
+    @Modifying
+    @Query("delete from OutboxRelayNode n where n.heartbeatAt < :cutoff")
+    int deleteStale(@Param("cutoff") Instant cutoff);
+}
@@ -0,0 +1,135 @@
+package com.sky_ecommerce.outbox;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.DatabaseMetaData;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Wakes the outbox relay as soon as new rows are committed.
+ *
+ * In-JVM: the first append() of a transaction registers an after-commit callback that releases the
+ * waiting relay loop. Across nodes (PostgreSQL only): the same callback issues one NOTIFY on
+ * {@link #CHANNEL} before commit, which Postgres delivers on commit to every node's
+ * {@link OutboxNotificationListener}.
+ * Signals are latched, so a wake-up that arrives while a batch is being relayed is not lost.
+ */
+@Component
+public class OutboxRelaySignal {
+
+    public static final String CHANNEL = "outbox_pending";
+
+    private static final Logger log = LoggerFactory.getLogger(OutboxRelaySignal.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean crossNode;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition signalled = lock.newCondition();
+    private boolean pending;
+
+    public OutboxRelaySignal(DataSource dataSource,
+                             JdbcTemplate jdbcTemplate,
+                             @Value("${outbox.relay.notify.enabled:true}") boolean notifyEnabled) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.crossNode = notifyEnabled && isPostgres(dataSource);
+        log.info("Outbox relay wake-up: in-JVM{}", crossNode ? " + Postgres LISTEN/NOTIFY" : " only");
+    }
+
+    /**
+     * Called from inside the appending transaction. The relay is woken only once the rows are visible,
+     * and once per transaction however many rows it appended.
+     */
+    public void appended() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            notifyNodes();
+            wakeUp();
+            return;
+        }
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof CommitSignal signal && signal.owner() == this) {
+                return;
+            }
+        }
+        TransactionSynchronizationManager.registerSynchronization(new CommitSignal());
+    }
+
+    public void wakeUp() {
+        lock.lock();
+        try {
+            pending = true;
+            signalled.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Blocks until {@link #wakeUp()} is called or the timeout elapses, and clears the signal.
+     *
+     * @return true if woken by a signal, false on timeout
+     */
+    public boolean await(long timeoutMs) throws InterruptedException {
+        lock.lock();
+        try {
+            long remaining = TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+            while (!pending && remaining > 0) {
+                remaining = signalled.awaitNanos(remaining);
+            }
+            boolean woken = pending;
+            pending = false;
+            return woken;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isCrossNode() {
+        return crossNode;
+    }
+
+    // NOTIFY is transactional: listeners receive it only if the surrounding transaction commits
+    private void notifyNodes() {
+        if (crossNode) {
+            jdbcTemplate.execute("NOTIFY " + CHANNEL);
+        }
+    }
+
+    // Registered by the first append of a transaction; later appends find it and add nothing
+    private final class CommitSignal implements TransactionSynchronization {
+
+        OutboxRelaySignal owner() {
+            return OutboxRelaySignal.this;
+        }
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            notifyNodes();
+        }
+
+        @Override
+        public void afterCommit() {
+            wakeUp();
+        }
+    }
+
+    private static boolean isPostgres(DataSource dataSource) {
+        try {
+            String product = JdbcUtils.extractDatabaseMetaData(dataSource, DatabaseMetaData::getDatabaseProductName);
+            return "PostgreSQL".equalsIgnoreCase(product);
+        } catch (Exception ex) {
+            log.warn("Could not detect database product, LISTEN/NOTIFY disabled: {}", ex.getMessage());
+            return false;
+        }
+    }
+}
@@ -3,14 +3,86 @@ package com.sky_ecommerce.outbox;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
 import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 
 public interface OutboxRepository extends JpaRepository<OutboxEntity, String> {
 
+    // Lock timeout -2 is Hibernate's LockOptions.SKIP_LOCKED: rows already locked by another
+    // node's claim are skipped instead of waited on (plain FOR UPDATE on dialects without support)
     @Lock(LockModeType.PESSIMISTIC_WRITE)
-    @Query("select o from OutboxEntity o where o.status = 'PENDING' order by o.createdAt asc")
-    List<OutboxEntity> findPending(Pageable pageable);
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    // nextAttemptAt is null only on rows written before that column existed; such rows are due.
+    // keyBucket is never null: db/outbox-upgrade.sql backfills it on rows written before it existed.
+    // A row is held back while an earlier PENDING row of the same key is backing off or leased, so a
+    // retried event can never be overtaken by a later one for the same aggregate. This cannot see rows
+    // another node has locked but not yet leased; OutboxService checks the batch against
+    // findEarliestPendingOutside for those
+    @Query("select o from OutboxEntity o where o.status = 'PENDING' " +
+            "and (o.nextAttemptAt is null or o.nextAttemptAt <= :now) " +
+            "and (o.leaseUntil is null or o.leaseUntil < :now) " +
+            "and o.keyBucket >= :bucketFrom and o.keyBucket < :bucketTo " +
+            "and not exists (select p.id from OutboxEntity p where p.key = o.key and p.status = 'PENDING' " +
+            "and p.createdAt < o.createdAt " +
+            "and (p.nextAttemptAt > :now or p.leaseUntil >= :now)) " +
+            "order by o.createdAt asc")
+    List<OutboxEntity> findPending(@Param("now") Instant now,
+                                   @Param("bucketFrom") int bucketFrom,
+                                   @Param("bucketTo") int bucketTo,
+                                   Pageable pageable);
+
+    // Per key, the earliest PENDING row that is not one of ids: (key, createdAt) pairs. Plain read, so it
+    // also sees rows other nodes hold locked by a claim that has not committed yet
+    @Query("select p.key, min(p.createdAt) from OutboxEntity p where p.status = 'PENDING' " +
+            "and p.key in :keys and p.id not in :ids group by p.key")
+    List<Object[]> findEarliestPendingOutside(@Param("keys") Collection<String> keys,
+                                              @Param("ids") Collection<String> ids);
+
+    long countByStatus(String status);
+
+    @Query("select o.topic, count(o) from OutboxEntity o where o.status = 'PENDING' group by o.topic")
+    List<Object[]> countPendingByTopic();
+
+    @Query("select min(o.createdAt) from OutboxEntity o where o.status = 'PENDING'")
+    Instant findOldestPendingCreatedAt();
+
+    @Query("select o from OutboxEntity o where o.status = 'SENT' and o.sentAt < :cutoff order by o.sentAt asc")
+    List<OutboxEntity> findSentBefore(@Param("cutoff") Instant cutoff, Pageable pageable);
+
+    // Same rows as findSentBefore as (id, envelope size) pairs; the database measures the blobs so
+    // they are never fetched. Native: HQL's octet_length does not accept byte[] arguments
+    @Query(value = "select id, octet_length(envelope) from outbox where status = 'SENT' " +
+            "and sent_at < :cutoff order by sent_at asc limit :limit", nativeQuery = true)
+    List<Object[]> findSentSizesBefore(@Param("cutoff") Instant cutoff, @Param("limit") int limit);
+
+    @Modifying
+    @Query("update OutboxEntity o set o.leaseOwner = :owner, o.leaseUntil = :until where o.id in :ids")
+    int lease(@Param("ids") Collection<String> ids, @Param("owner") String owner, @Param("until") Instant until);
+
+    @Modifying
+    @Query("update OutboxEntity o set o.status = 'SENT', o.sentAt = :sentAt, " +
+            "o.leaseOwner = null, o.leaseUntil = null where o.id in :ids")
+    int markSent(@Param("ids") Collection<String> ids, @Param("sentAt") Instant sentAt);
+
+    // Gives rows back unsent without counting an attempt (held behind a failed row of the same key)
+    @Modifying
+    @Query("update OutboxEntity o set o.leaseOwner = null, o.leaseUntil = null where o.id in :ids")
+    int release(@Param("ids") Collection<String> ids);
+
+    // attempts on the right-hand side is the pre-update value, so rows reaching maxAttempts + 1 are parked
+    @Modifying
+    @Query("update OutboxEntity o set o.attempts = o.attempts + 1, " +
+            "o.status = case when o.attempts >= :maxAttempts then 'FAILED' else o.status end, " +
+            "o.nextAttemptAt = :nextAttemptAt, o.leaseOwner = null, o.leaseUntil = null where o.id in :ids")
+    int markFailed(@Param("ids") Collection<String> ids,
+                   @Param("maxAttempts") int maxAttempts,
+                   @Param("nextAttemptAt") Instant nextAttemptAt);
 }
@@ -0,0 +1,45 @@
+package com.sky_ecommerce.outbox;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Exponential backoff with jitter for failed outbox sends.
+ * The delay before attempt n+1 is a random value between half and all of min(max, initial * multiplier^n),
+ * so rows that failed together do not all come due at the same instant.
+ */
+@Component
+public class OutboxRetryPolicy {
+
+    private final long initialMs;
+    private final long maxMs;
+    private final double multiplier;
+    private final int maxAttempts;
+
+    public OutboxRetryPolicy(@Value("${outbox.relay.retry.initial-ms:1000}") long initialMs,
+                             @Value("${outbox.relay.retry.max-ms:300000}") long maxMs,
+                             @Value("${outbox.relay.retry.multiplier:2.0}") double multiplier,
+                             @Value("${outbox.relay.retry.max-attempts:10}") int maxAttempts) {
+        this.initialMs = initialMs;
+        this.maxMs = maxMs;
+        this.multiplier = multiplier;
+        this.maxAttempts = maxAttempts;
+    }
+
+    /**
+     * @param attempts failed attempts so far, not counting the one that just failed
+     */
+    public Instant nextAttemptAt(int attempts, Instant now) {
+        double ceiling = Math.min(maxMs, initialMs * Math.pow(multiplier, attempts));
+        long delay = (long) (ceiling / 2 + ThreadLocalRandom.current().nextDouble() * ceiling / 2);
+        return now.plusMillis(delay);
+    }
+
+    /** Rows whose attempts exceed this are parked as FAILED. */
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+}
@@ -2,26 +2,96 @@ package com.sky_ecommerce.outbox;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 import org.springframework.stereotype.Component;
 
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the outbox relay loop: drain while a backlog exists, then sleep until an append signals
+ * new rows ({@link OutboxRelaySignal}) or the fallback poll interval elapses.
+ */
 @Component
-public class OutboxScheduler {
+public class OutboxScheduler implements SmartLifecycle {
     private static final Logger log = LoggerFactory.getLogger(OutboxScheduler.class);
 
     private final OutboxService outboxService;
+    private final OutboxRelaySignal signal;
+    private final OutboxMetrics metrics;
+    private final ThreadPoolTaskScheduler scheduler;
+    private final long intervalMs;
+
+    private volatile boolean running;
+    private volatile Future<?> loop;
 
-    public OutboxScheduler(OutboxService outboxService) {
+    public OutboxScheduler(OutboxService outboxService,
+                           OutboxRelaySignal signal,
+                           OutboxMetrics metrics,
+                           @Qualifier("outboxTaskScheduler") ThreadPoolTaskScheduler scheduler,
+                           @Value("${outbox.relay.interval-ms:1000}") long intervalMs) {
         this.outboxService = outboxService;
+        this.signal = signal;
+        this.metrics = metrics;
+        this.scheduler = scheduler;
+        this.intervalMs = intervalMs;
+    }
+
+    // The loop occupies one outboxTaskScheduler thread for the lifetime of the context
+    @Override
+    public void start() {
+        running = true;
+        loop = scheduler.submit(this::run);
+    }
+
+    // Lets the in-flight batch finish and be acknowledged before the worker pool and producers go away
+    @Override
+    public void stop() {
+        running = false;
+        signal.wakeUp();
+        Future<?> current = loop;
+        if (current != null) {
+            try {
+                current.get(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                log.warn("Outbox relay loop did not stop cleanly: {}", e.toString());
+            }
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                relay();
+                // Polling is only the fallback; appends wake us immediately
+                signal.await(intervalMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
     }
 
-    // Relay unsent outbox rows every second
-    @Scheduled(fixedDelayString = "${outbox.relay.interval-ms:1000}")
-    public void relay() {
+    // Relay until a pass publishes nothing (empty backlog, or only failing rows left)
+    public void relay() throws InterruptedException {
         try {
-            outboxService.relayBatch();
+            while (running && outboxService.relayBatch() > 0) {
+                // keep draining
+            }
         } catch (Exception e) {
             log.error("Outbox relay failed", e);
+            metrics.recordRelayError();
+            Thread.sleep(intervalMs);
         }
     }
 }
@@ -1,28 +1,96 @@
 package com.sky_ecommerce.outbox;
 
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sky_ecommerce.common.EnvelopeCodec;
 import com.sky_ecommerce.common.EventEnvelope;
+import com.sky_ecommerce.common.EventHeaders;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
 
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 @Service
 public class OutboxService {
 
+    private static final Logger log = LoggerFactory.getLogger(OutboxService.class);
+
     private final OutboxRepository repository;
-    private final ObjectMapper objectMapper;
-    private final KafkaTemplate<String, EventEnvelope<?>> kafkaTemplate;
+    private final EnvelopeCodec envelopeCodec;
+    private final KafkaTemplate<String, byte[]> kafkaTemplate;
+    private final KafkaTemplate<String, byte[]> transactionalKafkaTemplate; // null unless outbox.relay.transactional
+    private final TransactionTemplate transactionTemplate;
+    private final OutboxRelaySignal relaySignal;
+    private final OutboxRetryPolicy retryPolicy;
+    private final OutboxBatchSizer batchSizer;
+    private final OutboxMetrics metrics;
+    private final OutboxCoordinator coordinator;
+
+    private final int workers;
+    private final long leaseMs;
+    private final OutboxCodec codec;
+    private final int compressionLevel;
+    private final int compressionMinBytes;
+    private final String nodeId;
+    private final Executor workerPool;
+    private final Executor continuationPool;
 
-    public OutboxService(OutboxRepository repository, ObjectMapper objectMapper, KafkaTemplate<String, EventEnvelope<?>> kafkaTemplate) {
+    public OutboxService(OutboxRepository repository,
+                         EnvelopeCodec envelopeCodec,
+                         @Qualifier("ecommerceRawKafkaTemplate") KafkaTemplate<String, byte[]> kafkaTemplate,
+                         @Qualifier("outboxTransactionalKafkaTemplate") ObjectProvider<KafkaTemplate<String, byte[]>> transactionalKafkaTemplate,
+                         PlatformTransactionManager transactionManager,
+                         OutboxRelaySignal relaySignal,
+                         OutboxRetryPolicy retryPolicy,
+                         OutboxBatchSizer batchSizer,
+                         OutboxMetrics metrics,
+                         OutboxCoordinator coordinator,
+                         @Value("${outbox.relay.workers:4}") int workers,
+                         @Value("${outbox.relay.lease-ms:30000}") long leaseMs,
+                         @Value("${outbox.compression.codec:NONE}") OutboxCodec codec,
+                         @Value("${outbox.compression.level:1}") int compressionLevel,
+                         @Value("${outbox.compression.min-bytes:256}") int compressionMinBytes,
+                         OutboxNode node,
+                         @Qualifier("outboxRelayExecutor") Executor workerPool,
+                         @Qualifier("outboxContinuationExecutor") Executor continuationPool) {
         this.repository = repository;
-        this.objectMapper = objectMapper;
+        this.envelopeCodec = envelopeCodec;
         this.kafkaTemplate = kafkaTemplate;
+        this.transactionalKafkaTemplate = transactionalKafkaTemplate.getIfAvailable();
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.relaySignal = relaySignal;
+        this.retryPolicy = retryPolicy;
+        this.batchSizer = batchSizer;
+        this.metrics = metrics;
+        this.coordinator = coordinator;
+        this.workers = Math.max(1, workers);
+        this.leaseMs = leaseMs;
+        this.codec = codec;
+        this.compressionLevel = compressionLevel;
+        this.compressionMinBytes = compressionMinBytes;
+        this.nodeId = node.getId();
+        this.workerPool = workerPool;
+        this.continuationPool = continuationPool;
     }
 
     @Transactional
@@ -32,54 +100,216 @@ public class OutboxService {
             e.setId(envelope.getId());
             e.setTopic(topic);
             e.setKey(key);
-            e.setEnvelopeJson(objectMapper.writeValueAsString(envelope));
-            e.setCreatedAt(Instant.now());
+            e.setKeyBucket(OutboxCoordinator.bucketOf(key));
+            // stored in the topic's wire format so the relay publishes the bytes unchanged
+            byte[] raw = envelopeCodec.encode(topic, envelope);
+            // tiny envelopes gain nothing from compression; store them as-is
+            OutboxCodec rowCodec = raw.length >= compressionMinBytes ? codec : OutboxCodec.NONE;
+            e.setEnvelope(rowCodec.encode(raw, compressionLevel));
+            e.setCodec(rowCodec.name());
+            e.setEventType(envelope.getEventType());
+            e.setSchemaVersion(envelope.getSchemaVersion());
+            e.setCorrelationId(envelope.getCorrelationId());
+            Instant now = Instant.now();
+            e.setCreatedAt(now);
+            e.setNextAttemptAt(now);
             e.setAttempts(0);
             e.setStatus("PENDING");
             repository.save(e);
+            relaySignal.appended();
         } catch (Exception ex) {
             throw new RuntimeException("Failed to append outbox record", ex);
         }
     }
 
-    @Transactional
-    public void markSent(OutboxEntity e) {
-        e.setSentAt(Instant.now());
-        e.setStatus("SENT");
-        repository.save(e);
+    /**
+     * Claims up to one (adaptively sized) batch of due PENDING rows for this node and sends them on the worker pool.
+     * Only rows in this node's key-bucket range ({@link OutboxCoordinator}) are claimed, and claiming uses
+     * FOR UPDATE SKIP LOCKED plus a short lease, so several replicas relay disjoint batches in parallel. Rows are routed to workers by key hash,
+     * and within a lane each row is sent only after the previous row of its key was acknowledged; rows behind a
+     * failed send are held back unsent, so a key's events reach Kafka in creation order while keys stay parallel.
+     *
+     * @return number of rows published; the relay loop keeps draining while this is positive
+     */
+    public int relayBatch() {
+        long started = System.nanoTime();
+        List<OutboxEntity> batch = claimBatch(batchSizer.current());
+        if (batch.isEmpty()) {
+            return 0;
+        }
+
+        List<List<OutboxEntity>> lanes = new ArrayList<>(workers);
+        for (int i = 0; i < workers; i++) {
+            lanes.add(new ArrayList<>());
+        }
+        for (OutboxEntity e : batch) {
+            lanes.get(Math.floorMod(e.getKey().hashCode(), workers)).add(e);
+        }
+
+        Queue<String> sent = new ConcurrentLinkedQueue<>();
+        Queue<OutboxEntity> failed = new ConcurrentLinkedQueue<>();
+        Queue<String> held = new ConcurrentLinkedQueue<>();
+        List<CompletableFuture<Void>> running = new ArrayList<>(workers);
+        for (List<OutboxEntity> lane : lanes) {
+            if (!lane.isEmpty()) {
+                running.add(CompletableFuture
+                        .supplyAsync(() -> sendLane(lane, sent, failed, held), workerPool)
+                        .thenCompose(acks -> acks));
+            }
+        }
+        CompletableFuture.allOf(running.toArray(new CompletableFuture[0])).join();
+
+        acknowledge(sent, failed, held);
+        long elapsed = System.nanoTime() - started;
+        metrics.recordBatch(elapsed);
+        batchSizer.record(batch.size(), failed.size(), TimeUnit.NANOSECONDS.toMillis(elapsed));
+        return sent.size();
     }
 
-    @Transactional
-    public void markFailed(OutboxEntity e, Exception ex) {
-        e.setAttempts(e.getAttempts() + 1);
-        if (e.getAttempts() > 10) {
-            e.setStatus("FAILED");
+    // One UPDATE for the whole batch's successes and one per attempt count for its failures,
+    // instead of a save per row; held rows only give their lease back
+    private void acknowledge(Collection<String> sent, Collection<OutboxEntity> failed, Collection<String> held) {
+        transactionTemplate.executeWithoutResult(status -> {
+            Instant now = Instant.now();
+            if (!sent.isEmpty()) {
+                repository.markSent(List.copyOf(sent), now);
+            }
+            if (!held.isEmpty()) {
+                repository.release(List.copyOf(held));
+            }
+            Map<Integer, List<String>> failedByAttempts = failed.stream().collect(Collectors.groupingBy(
+                    OutboxEntity::getAttempts, Collectors.mapping(OutboxEntity::getId, Collectors.toList())));
+            failedByAttempts.forEach((attempts, ids) ->
+                    repository.markFailed(ids, retryPolicy.getMaxAttempts(), retryPolicy.nextAttemptAt(attempts, now)));
+        });
+    }
+
+    List<OutboxEntity> claimBatch(int batchSize) {
+        return transactionTemplate.execute(status -> {
+            Instant now = Instant.now();
+            int[] range = coordinator.range();
+            List<OutboxEntity> batch = keyOrderedPrefix(
+                    repository.findPending(now, range[0], range[1], PageRequest.of(0, batchSize)));
+            if (!batch.isEmpty()) {
+                repository.lease(batch.stream().map(OutboxEntity::getId).toList(), nodeId, now.plusMillis(leaseMs));
+            }
+            return batch;
+        });
+    }
+
+    // SKIP LOCKED passes over rows another node's claim has locked but not leased yet, so findPending can
+    // return a later row of a key whose earlier row that claim is about to send. Keep a row only if every
+    // earlier PENDING row of its key is in this batch as well; the rest stay unleased and come back once
+    // the rows ahead of them are sent. Keyed on the row key, so bucket ranges and moves do not matter
+    private List<OutboxEntity> keyOrderedPrefix(List<OutboxEntity> batch) {
+        if (batch.isEmpty()) {
+            return batch;
         }
-        repository.save(e);
+        Set<String> keys = batch.stream().map(OutboxEntity::getKey).collect(Collectors.toSet());
+        List<String> ids = batch.stream().map(OutboxEntity::getId).toList();
+        Map<String, Instant> blockedAfter = new HashMap<>();
+        for (Object[] row : repository.findEarliestPendingOutside(keys, ids)) {
+            blockedAfter.put((String) row[0], (Instant) row[1]);
+        }
+        if (blockedAfter.isEmpty()) {
+            return batch;
+        }
+        return batch.stream()
+                .filter(e -> !blockedAfter.containsKey(e.getKey())
+                        || !e.getCreatedAt().isAfter(blockedAfter.get(e.getKey())))
+                .toList();
     }
 
-    @Transactional
-    public void relayBatch() {
-        Pageable page = PageRequest.of(0, 50);
-        List<OutboxEntity> batch = repository.findPending(page);
-        for (OutboxEntity e : batch) {
-            try {
-                EventEnvelope<?> env = objectMapper.readValue(e.getEnvelopeJson(), new TypeReference<EventEnvelope<?>>() {});
-                kafkaTemplate
-                        .send(e.getTopic(), e.getKey(), env)
-                        .whenComplete((result, throwable) -> {
-                            if (throwable == null) {
-                                markSent(e);
-                            } else {
-                                Exception exToRecord = (throwable instanceof Exception)
-                                        ? (Exception) throwable
-                                        : new RuntimeException(throwable);
-                                markFailed(e, exToRecord);
-                            }
-                        });
-            } catch (Exception ex) {
-                markFailed(e, ex);
+    // Completes (never exceptionally) once every row of the lane is recorded in sent, failed or held.
+    // Rows of one key form a chain (the lane is in createdAt order); the next link is sent from the
+    // continuation pool rather than the producer callback thread, which must never block on a full send
+    // buffer. A link the pool rejects (only at shutdown) is held back like one behind a failure.
+    private CompletableFuture<Void> sendLane(List<OutboxEntity> lane, Queue<String> sent,
+                                             Queue<OutboxEntity> failed, Queue<String> held) {
+        if (transactionalKafkaTemplate != null) {
+            sendInTransaction(lane, sent, failed);
+            return CompletableFuture.completedFuture(null);
+        }
+        Map<String, CompletableFuture<Boolean>> tails = new HashMap<>();
+        for (OutboxEntity e : lane) {
+            CompletableFuture<Boolean> previous = tails.get(e.getKey());
+            tails.put(e.getKey(), previous == null
+                    ? send(e, sent, failed)
+                    : previous.thenComposeAsync(ok -> {
+                        if (ok) {
+                            return send(e, sent, failed);
+                        }
+                        held.add(e.getId());
+                        return CompletableFuture.completedFuture(false);
+                    }, continuationPool).exceptionally(ex -> {
+                        held.add(e.getId());
+                        return false;
+                    }));
+        }
+        return CompletableFuture.allOf(tails.values().toArray(new CompletableFuture[0]));
+    }
+
+    /**
+     * Sends the whole lane inside one Kafka transaction on the calling worker thread. Rows are reported
+     * as sent only after the Kafka commit, so the DB acknowledgement never runs ahead of Kafka; an abort
+     * leaves nothing visible to read_committed consumers and all rows are retried together.
+     */
+    private void sendInTransaction(List<OutboxEntity> lane, Queue<String> sent, Queue<OutboxEntity> failed) {
+        long started = System.nanoTime();
+        try {
+            transactionalKafkaTemplate.executeInTransaction(ops -> {
+                lane.forEach(e -> ops.send(record(e)));
+                return null;
+            });
+            long latency = System.nanoTime() - started;
+            for (OutboxEntity e : lane) {
+                sent.add(e.getId());
+                metrics.recordSent(e.getTopic(), latency);
+            }
+        } catch (Exception ex) {
+            log.warn("Outbox transaction of {} rows aborted", lane.size(), ex);
+            for (OutboxEntity e : lane) {
+                failed.add(e);
+                metrics.recordFailed(e.getTopic());
             }
         }
     }
+
+    // Completes with true once Kafka acknowledged the row, false if it was recorded as failed
+    private CompletableFuture<Boolean> send(OutboxEntity e, Queue<String> sent, Queue<OutboxEntity> failed) {
+        long started = System.nanoTime();
+        try {
+            return kafkaTemplate
+                    .send(record(e))
+                    .handle((result, throwable) -> {
+                        if (throwable == null) {
+                            sent.add(e.getId());
+                            metrics.recordSent(e.getTopic(), System.nanoTime() - started);
+                            return true;
+                        }
+                        log.warn("Outbox send failed for {} (attempt {})", e.getId(), e.getAttempts() + 1, throwable);
+                        failed.add(e);
+                        metrics.recordFailed(e.getTopic());
+                        return false;
+                    });
+        } catch (Exception ex) {
+            log.warn("Outbox send failed for {} (attempt {})", e.getId(), e.getAttempts() + 1, ex);
+            failed.add(e);
+            metrics.recordFailed(e.getTopic());
+            return CompletableFuture.completedFuture(false);
+        }
+    }
+
+    // Rows written before the header columns existed are published without headers; consumers
+    // then fall back to decoding the envelope
+    private static ProducerRecord<String, byte[]> record(OutboxEntity e) {
+        ProducerRecord<String, byte[]> record = new ProducerRecord<>(e.getTopic(), e.getKey(), payload(e));
+        EventHeaders.write(record.headers(), e.getEventType(), e.getSchemaVersion(), e.getCorrelationId());
+        return record;
+    }
+
+    // Wire bytes of the row: stored envelope with its storage codec undone
+    private static byte[] payload(OutboxEntity e) {
+        return OutboxCodec.of(e.getCodec()).decode(e.getEnvelope());
+    }
 }
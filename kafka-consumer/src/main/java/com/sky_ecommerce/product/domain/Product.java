@@ -4,8 +4,8 @@ import java.math.BigDecimal;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.UUID;
 
+import com.sky_ecommerce.common.UuidV7;
 import com.sky_ecommerce.product.category.domain.Category;
 
 import jakarta.persistence.CascadeType;
@@ -33,7 +33,7 @@ public class Product {
     public enum Status { DRAFT, ACTIVE, INACTIVE }
 
     @Id
-    private String id = UUID.randomUUID().toString();
+    private String id = UuidV7.next();
 
     @Column(nullable = false)
     private String sellerId;
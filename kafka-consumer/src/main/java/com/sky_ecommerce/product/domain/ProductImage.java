@@ -1,8 +1,8 @@
 package com.sky_ecommerce.product.domain;
 
+import com.sky_ecommerce.common.UuidV7;
 import jakarta.persistence.*;
 import java.time.Instant;
-import java.util.UUID;
 
 @Entity
 @Table(name = "product_images", indexes = {
@@ -12,7 +12,7 @@ import java.util.UUID;
 public class ProductImage {
 
     @Id
-    private String id = UUID.randomUUID().toString();
+    private String id = UuidV7.next();
 
     @ManyToOne(fetch = FetchType.LAZY, optional = false)
     @JoinColumn(name = "product_id", nullable = false)
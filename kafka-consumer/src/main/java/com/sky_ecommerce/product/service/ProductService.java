@@ -1,5 +1,6 @@
 package com.sky_ecommerce.product.service;
 
+import com.sky_ecommerce.common.UuidV7;
 import com.sky_ecommerce.product.domain.Product;
 import com.sky_ecommerce.product.domain.ProductRepository;
 import jakarta.persistence.EntityNotFoundException;
@@ -27,7 +28,7 @@ public class ProductService {
     }
 
     public Product create(String sellerId, Product payload) {
-        payload.setId(java.util.UUID.randomUUID().toString());
+        payload.setId(UuidV7.next());
         payload.setSellerId(sellerId);
         if (payload.getStatus() == null) {
             payload.setStatus(Product.Status.ACTIVE);
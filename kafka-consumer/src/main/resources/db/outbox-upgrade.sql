@@ -0,0 +1,57 @@
+-- Runs on every start before Hibernate's ddl-auto=update (spring.sql.init) and must stay idempotent.
+-- Statements are separated by @@ because the DO block contains semicolons.
+
+-- outbox.envelope_json (a @Lob String, i.e. an oid large object holding the JSON text) was replaced by
+-- outbox.envelope (bytea, the wire bytes). ddl-auto never drops columns, so the old NOT NULL column would
+-- reject every insert: move unsent rows over, free their large objects and drop it.
+DO $$
+DECLARE
+    legacy_type text;
+BEGIN
+    SELECT data_type INTO legacy_type FROM information_schema.columns
+    WHERE table_schema = current_schema() AND table_name = 'outbox' AND column_name = 'envelope_json';
+    IF legacy_type IS NULL THEN
+        RETURN;
+    END IF;
+    ALTER TABLE outbox ADD COLUMN IF NOT EXISTS envelope bytea;
+    IF legacy_type = 'oid' THEN
+        UPDATE outbox SET envelope = lo_get(envelope_json) WHERE envelope IS NULL AND envelope_json IS NOT NULL;
+        PERFORM lo_unlink(envelope_json) FROM outbox WHERE envelope_json IS NOT NULL;
+    ELSE
+        UPDATE outbox SET envelope = convert_to(envelope_json, 'UTF8') WHERE envelope IS NULL;
+    END IF;
+    ALTER TABLE outbox DROP COLUMN envelope_json;
+END
+$$
+@@
+
+-- outbox.key_bucket (OutboxCoordinator.bucketOf) is null on rows written before the column existed, and
+-- the relay only claims rows inside its bucket range. Add the column ahead of ddl-auto and fill it in with
+-- the same hash: Java's String.hashCode over UTF-16 code units, floorMod 1024. That is the hash's low 10
+-- bits, so the arithmetic can stay mod 1024 throughout.
+DO $$
+DECLARE
+    r record;
+    h int;
+    c int;
+BEGIN
+    IF to_regclass('outbox') IS NULL THEN
+        RETURN;
+    END IF;
+    ALTER TABLE outbox ADD COLUMN IF NOT EXISTS key_bucket integer;
+    FOR r IN SELECT id, message_key FROM outbox WHERE key_bucket IS NULL LOOP
+        h := 0;
+        FOR i IN 1..length(r.message_key) LOOP
+            c := ascii(substr(r.message_key, i, 1));
+            IF c > 65535 THEN
+                -- outside the BMP Java sees a surrogate pair: high surrogate first, low one below
+                h := (h * 31 + 55296 + ((c - 65536) >> 10)) % 1024;
+                c := 56320 + ((c - 65536) & 1023);
+            END IF;
+            h := (h * 31 + c) % 1024;
+        END LOOP;
+        UPDATE outbox SET key_bucket = h WHERE id = r.id;
+    END LOOP;
+END
+$$
+@@
@@ -0,0 +1,62 @@
+package com.sky_ecommerce.common;
+
+import com.sky_ecommerce.order.domain.Order;
+import com.sky_ecommerce.order.domain.OrderRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.AutoConfigurationPackage;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** The subclasses' save() path on H2 in PostgreSQL mode; every call commits for real. */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class AssignedIdEntityTest {
+
+    @SpringBootConfiguration
+    @AutoConfigurationPackage(basePackageClasses = Order.class)
+    static class Config {
+    }
+
+    @Autowired
+    private OrderRepository orders;
+
+    @AfterEach
+    void cleanUp() {
+        orders.deleteAll();
+    }
+
+    @Test
+    void newEntityIsPersistedAndLoadedOneIsUpdatedInPlace() {
+        Order order = new Order();
+        order.setId(UuidV7.next());
+        order.setCustomerId("customer-1");
+        order.setTotal(new BigDecimal("42.50"));
+        order.setStatus(Order.Status.PENDING);
+        assertThat(order.isNew()).isTrue();
+
+        Order saved = orders.save(order);
+        // persisted, not merged: the same instance comes back, no longer new
+        assertThat(saved).isSameAs(order);
+        assertThat(saved.isNew()).isFalse();
+
+        Order loaded = orders.findById(order.getId()).orElseThrow();
+        assertThat(loaded.isNew()).isFalse();
+        loaded.setStatus(Order.Status.PAID);
+        orders.save(loaded);
+
+        assertThat(orders.findById(order.getId())).get().extracting(Order::getStatus).isEqualTo(Order.Status.PAID);
+        assertThat(orders.count()).isEqualTo(1);
+    }
+}
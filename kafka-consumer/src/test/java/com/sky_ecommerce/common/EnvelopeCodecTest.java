@@ -0,0 +1,69 @@
+package com.sky_ecommerce.common;
+
+import com.sky_ecommerce.order.service.events.OrderEvents;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EnvelopeCodecTest {
+
+    private final EnvelopeCodec codec = TestEnvelopes.codec("t.CBOR=cbor, t.SMILE=SMILE");
+
+    @Test
+    void topicsUseTheirConfiguredFormatAndTheRestTheDefault() {
+        assertThat(codec.formatFor("t.CBOR")).isEqualTo(EnvelopeFormat.CBOR);
+        assertThat(codec.formatFor("t.SMILE")).isEqualTo(EnvelopeFormat.SMILE);
+        assertThat(codec.formatFor("order.events")).isEqualTo(EnvelopeFormat.JSON);
+    }
+
+    @ParameterizedTest
+    @EnumSource(EnvelopeFormat.class)
+    void encodedEnvelopesAreDetectedAndDecodedWithTypedPayloads(EnvelopeFormat format) {
+        EventEnvelope<OrderEvents.OrderCreated> sent = TestEnvelopes.orderCreated("o1");
+
+        byte[] data = codec.encode("t." + format, sent);
+        EventEnvelope<Object> received = codec.decodeTyped(data);
+
+        assertThat(EnvelopeFormat.detect(data)).isEqualTo(format);
+        assertThat(received).usingRecursiveComparison().isEqualTo(sent);
+        assertThat(received.getPayload()).isInstanceOf(OrderEvents.OrderCreated.class);
+    }
+
+    @Test
+    void binaryFormatsAreSmallerThanJson() {
+        EventEnvelope<OrderEvents.OrderCreated> env = TestEnvelopes.orderCreated("o1");
+        int json = codec.encode("t.JSON", env).length;
+
+        assertThat(codec.encode("t.CBOR", env).length).isLessThan(json);
+        assertThat(codec.encode("t.SMILE", env).length).isLessThan(json);
+    }
+
+    @Test
+    void payloadMayPrecedeTheEventType() {
+        // written by a producer that does not follow EventEnvelope's property order
+        String json = "{\"payload\":{\"orderId\":\"o1\",\"customerId\":\"c1\",\"total\":12.5},"
+                + "\"id\":\"e1\",\"schemaVersion\":1,\"eventType\":\"OrderCreated\",\"subjectId\":\"o1\"}";
+
+        EventEnvelope<Object> env = codec.decodeTyped(json.getBytes(StandardCharsets.UTF_8));
+
+        assertThat(env.getPayload()).isInstanceOfSatisfying(OrderEvents.OrderCreated.class, p -> {
+            assertThat(p.getOrderId()).isEqualTo("o1");
+            assertThat(p.getTotal()).isEqualByComparingTo(new BigDecimal("12.5"));
+        });
+    }
+
+    @Test
+    void unregisteredEventTypesDecodeToMaps() {
+        String json = "{\"id\":\"e1\",\"eventType\":\"AdHoc\",\"payload\":{\"note\":\"hi\"}}";
+
+        EventEnvelope<Object> env = codec.decodeTyped(json.getBytes(StandardCharsets.UTF_8));
+
+        assertThat(env.getPayload()).isEqualTo(Map.of("note", "hi"));
+    }
+}
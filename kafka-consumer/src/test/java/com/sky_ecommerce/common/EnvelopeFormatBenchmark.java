@@ -0,0 +1,88 @@
+package com.sky_ecommerce.common;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-envelope cost of each wire format for OrderCreated on order.events: {@code encode} (producer side),
+ * {@code decodeTyped} (full bind into the registered payload class), {@code decodeLazy} (metadata only, as
+ * routing and filtering see it) and {@code decodeLazyPayload} (metadata, then the payload on demand).
+ * Setup prints the average record size per format.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EnvelopeFormatBenchmark {
+
+    private static final String TOPIC = "order.events";
+    private static final int ENVELOPES = 1000;
+
+    @Param({"JSON", "CBOR", "SMILE"})
+    public EnvelopeFormat format;
+
+    private EnvelopeCodec codec;
+    private EventEnvelope<?>[] envelopes;
+    private byte[][] records;
+
+    @Setup
+    public void setUp() {
+        codec = TestEnvelopes.codec(TOPIC + "=" + format);
+        envelopes = new EventEnvelope<?>[ENVELOPES];
+        records = new byte[ENVELOPES][];
+        long bytes = 0;
+        for (int i = 0; i < ENVELOPES; i++) {
+            envelopes[i] = TestEnvelopes.orderCreated("order-" + i);
+            records[i] = codec.encode(TOPIC, envelopes[i]);
+            bytes += records[i].length;
+        }
+        System.out.printf("%n%s: %.1f bytes per OrderCreated envelope%n", format, (double) bytes / ENVELOPES);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ENVELOPES)
+    public void encode(Blackhole bh) {
+        for (EventEnvelope<?> envelope : envelopes) {
+            bh.consume(codec.encode(TOPIC, envelope));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ENVELOPES)
+    public void decodeTyped(Blackhole bh) {
+        for (byte[] record : records) {
+            bh.consume(codec.decodeTyped(record));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ENVELOPES)
+    public void decodeLazy(Blackhole bh) {
+        for (byte[] record : records) {
+            bh.consume(codec.decodeLazy(record).getEventType());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ENVELOPES)
+    public void decodeLazyPayload(Blackhole bh) {
+        for (byte[] record : records) {
+            bh.consume(codec.decodeLazy(record).getPayload());
+        }
+    }
+}
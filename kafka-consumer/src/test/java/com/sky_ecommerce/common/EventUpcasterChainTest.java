@@ -0,0 +1,125 @@
+package com.sky_ecommerce.common;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sky_ecommerce.order.service.events.OrderEvents;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.UnaryOperator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class EventUpcasterChainTest {
+
+    // OrderCreated at v3: v1 named the customer "buyer", v2 carried the total in cents
+    private final EventTypeRegistry registry = new EventTypeRegistry()
+            .register("OrderCreated", OrderEvents.OrderCreated.class, 3);
+    private final AtomicInteger v1Calls = new AtomicInteger();
+
+    private final EventUpcaster v1 = upcaster(1, node -> {
+        v1Calls.incrementAndGet();
+        node.set("customerId", node.remove("buyer"));
+        return node;
+    });
+    private final EventUpcaster v2 = upcaster(2, node -> {
+        node.put("total", node.remove("totalCents").asLong() / 100.0);
+        return node;
+    });
+
+    @Test
+    void onlyOlderVersionsOfRegisteredTypesAreUpcast() {
+        EventUpcasterChain chain = chain(v1, v2);
+
+        assertThat(chain.needsUpcast("OrderCreated", 1)).isTrue();
+        assertThat(chain.needsUpcast("OrderCreated", 3)).isFalse();
+        assertThat(chain.needsUpcast("OrderCreated", null)).isFalse();
+        assertThat(chain.needsUpcast("AdHoc", 1)).isFalse();
+    }
+
+    @Test
+    void stepsAreComposedFromTheRecordsVersionWhateverTheBeanOrder() {
+        EventUpcasterChain chain = chain(v2, v1);
+        ObjectNode old = TestEnvelopes.objectMapper().createObjectNode()
+                .put("orderId", "o1").put("buyer", "c1").put("totalCents", 1250);
+
+        JsonNode upcast = chain.upcast("OrderCreated", 1, old.deepCopy());
+        chain.upcast("OrderCreated", 1, old.deepCopy());
+
+        assertThat(upcast.get("customerId").asText()).isEqualTo("c1");
+        assertThat(upcast.get("total").asDouble()).isEqualTo(12.5);
+        assertThat(chain.upcast("OrderCreated", 2, TestEnvelopes.objectMapper().createObjectNode()
+                .put("customerId", "c1").put("totalCents", 100)).get("total").asDouble()).isEqualTo(1.0);
+        // the composed chain is reused, but every record still goes through each step
+        assertThat(v1Calls).hasValue(2);
+    }
+
+    @Test
+    void aGapInTheChainFailsWhenFirstNeeded() {
+        EventUpcasterChain chain = chain(v1);
+
+        assertThatThrownBy(() -> chain.upcast("OrderCreated", 1, TestEnvelopes.objectMapper().createObjectNode()))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("No upcaster for OrderCreated v2 -> v3");
+    }
+
+    @Test
+    void duplicateStepsAreRejectedAtStartup() {
+        assertThatThrownBy(() -> chain(v1, upcaster(1, node -> node)))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("Duplicate upcaster for OrderCreated v1");
+    }
+
+    @Test
+    void decodingAnOldRecordBindsTheCurrentClassAndMarksTheEnvelopeChanged() {
+        EnvelopeCodec codec = TestEnvelopes.codec(registry, "", v1, v2);
+        byte[] v1Record = ("{\"id\":\"e1\",\"schemaVersion\":1,\"eventType\":\"OrderCreated\","
+                + "\"payload\":{\"orderId\":\"o1\",\"buyer\":\"c1\",\"totalCents\":4250}}").getBytes(StandardCharsets.UTF_8);
+
+        EventEnvelope<Object> typed = codec.decodeTyped(v1Record);
+        LazyEventEnvelope<Object> lazy = codec.decodeLazy(v1Record);
+
+        assertThat(typed.getSchemaVersion()).isEqualTo(3);
+        assertThat(typed.getPayload()).isInstanceOfSatisfying(OrderEvents.OrderCreated.class, p -> {
+            assertThat(p.getCustomerId()).isEqualTo("c1");
+            assertThat(p.getTotal()).isEqualByComparingTo("42.5");
+        });
+        assertThat(lazy.unmodified()).isTrue();
+        assertThat(lazy.getPayload()).usingRecursiveComparison().isEqualTo(typed.getPayload());
+        // the original bytes are v1, so forwarding must re-encode at v3
+        assertThat(lazy.getSchemaVersion()).isEqualTo(3);
+        assertThat(lazy.unmodified()).isFalse();
+    }
+
+    @SuppressWarnings("unchecked")
+    private EventUpcasterChain chain(EventUpcaster... upcasters) {
+        ObjectProvider<EventUpcaster> provider = mock(ObjectProvider.class);
+        when(provider.orderedStream()).thenAnswer(invocation -> List.of(upcasters).stream());
+        return new EventUpcasterChain(registry, provider);
+    }
+
+    private static EventUpcaster upcaster(int fromVersion, UnaryOperator<ObjectNode> step) {
+        return new EventUpcaster() {
+            @Override
+            public String eventType() {
+                return "OrderCreated";
+            }
+
+            @Override
+            public int fromVersion() {
+                return fromVersion;
+            }
+
+            @Override
+            public JsonNode upcast(JsonNode payload) {
+                return step.apply((ObjectNode) payload);
+            }
+        };
+    }
+}
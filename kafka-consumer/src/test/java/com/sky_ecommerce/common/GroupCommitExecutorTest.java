@@ -0,0 +1,124 @@
+package com.sky_ecommerce.common;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class GroupCommitExecutorTest {
+
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+    private final ExecutorService callers = Executors.newFixedThreadPool(4);
+    private GroupCommitExecutor executor;
+
+    @AfterEach
+    void shutdown() throws InterruptedException {
+        callers.shutdownNow();
+        executor.shutdown();
+    }
+
+    @Test
+    void failedGroupIsRetriedOneUnitPerTransaction() throws Exception {
+        executor = new GroupCommitExecutor(transactionManager, true, 64, 0, 1);
+        // park the only committer so the next three units queue up and are committed as one group
+        CountDownLatch parked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<?> blocker = callers.submit(() -> executor.execute(() -> {
+            parked.countDown();
+            await(release);
+        }));
+        assertThat(parked.await(5, TimeUnit.SECONDS)).isTrue();
+
+        Map<String, Integer> runs = new ConcurrentHashMap<>();
+        List<Future<String>> results = List.of("a", "bad", "c").stream()
+                .map(name -> callers.submit(() -> executor.execute(() -> {
+                    runs.merge(name, 1, Integer::sum);
+                    if (name.equals("bad")) {
+                        throw new IllegalStateException("constraint violated");
+                    }
+                    return name;
+                })))
+                .toList();
+        // give the three callers time to enqueue behind the parked unit
+        Thread.sleep(200);
+        release.countDown();
+        blocker.get(5, TimeUnit.SECONDS);
+
+        assertThat(results.get(0).get(5, TimeUnit.SECONDS)).isEqualTo("a");
+        assertThat(results.get(2).get(5, TimeUnit.SECONDS)).isEqualTo("c");
+        assertThatThrownBy(() -> results.get(1).get(5, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(IllegalStateException.class).hasRootCauseMessage("constraint violated");
+        // the shared attempt rolls back, then each unit runs alone; units ahead of "bad" ran twice
+        assertThat(runs).containsEntry("bad", 2);
+        assertThat(runs.get("a")).isBetween(1, 2);
+        assertThat(runs.get("c")).isBetween(1, 2);
+        verify(transactionManager, times(2)).rollback(any());
+        verify(transactionManager, times(3)).commit(any());
+    }
+
+    @Test
+    void workSeesTheCallersMdcAndSecurityContextAndNothingLeaks() throws Exception {
+        executor = new GroupCommitExecutor(transactionManager, true, 64, 0, 1);
+        Authentication user = new TestingAuthenticationToken("alice", "n/a");
+        List<Object> seen = new CopyOnWriteArrayList<>();
+
+        callers.submit(() -> {
+            MDC.put("correlationId", "corr-1");
+            SecurityContextHolder.getContext().setAuthentication(user);
+            try {
+                executor.execute(() -> {
+                    seen.add(Thread.currentThread().getName());
+                    seen.add(MDC.get("correlationId"));
+                    seen.add(SecurityContextHolder.getContext().getAuthentication());
+                });
+            } finally {
+                MDC.clear();
+                SecurityContextHolder.clearContext();
+            }
+        }).get(5, TimeUnit.SECONDS);
+        // a later caller without context gets none from the previous unit
+        callers.submit(() -> executor.execute(() -> {
+            seen.add(String.valueOf(MDC.get("correlationId")));
+            seen.add(String.valueOf(SecurityContextHolder.getContext().getAuthentication()));
+        })).get(5, TimeUnit.SECONDS);
+
+        assertThat(seen).containsExactly("group-commit-1", "corr-1", user, "null", "null");
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Test
+    void disabledRunsInlineInTheCallersTransaction() {
+        executor = new GroupCommitExecutor(transactionManager, false, 64, 500, 2);
+
+        assertThat(executor.execute(() -> Thread.currentThread().getName()))
+                .isEqualTo(Thread.currentThread().getName());
+        verify(transactionManager).commit(any());
+    }
+}
@@ -0,0 +1,144 @@
+package com.sky_ecommerce.common;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Comparator;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Insert throughput (rows/s) into a table keyed by VARCHAR(36) ids, as the outbox and orders tables are,
+ * for random v4 ids vs time-ordered v7 ids from {@link UuidV7}. Each invocation inserts one JDBC batch of
+ * 1000 rows in its own transaction, so the primary key index keeps growing across iterations; teardown
+ * prints the row count and the on-disk size.
+ *
+ * Runs against a file-based H2 database under target/ by default. Pass {@code -p url=jdbc:postgresql://...
+ * -p user=... -p password=...} to run against Postgres, where the reported size is the primary key index.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IdInsertBenchmark {
+
+    private static final int BATCH = 1000;
+    private static final Path H2_DIR = Path.of("target", "id-insert-benchmark");
+
+    @Param({"V4", "V7"})
+    public String ids;
+
+    // empty: a fresh H2 file database per trial
+    @Param({""})
+    public String url;
+
+    @Param({"sa"})
+    public String user;
+
+    @Param({""})
+    public String password;
+
+    private Connection connection;
+    private PreparedStatement insert;
+    private Path h2File;
+
+    @Setup(Level.Trial)
+    public void open() throws Exception {
+        String jdbcUrl = url;
+        if (jdbcUrl.isEmpty()) {
+            deleteRecursively(H2_DIR);
+            h2File = H2_DIR.resolve(ids.toLowerCase() + ".mv.db");
+            jdbcUrl = "jdbc:h2:" + H2_DIR.toAbsolutePath().resolve(ids.toLowerCase()) + ";MODE=PostgreSQL";
+        }
+        connection = DriverManager.getConnection(jdbcUrl, user, password);
+        try (Statement ddl = connection.createStatement()) {
+            ddl.execute("DROP TABLE IF EXISTS id_insert_benchmark");
+            ddl.execute("CREATE TABLE id_insert_benchmark (id VARCHAR(36) PRIMARY KEY, payload VARCHAR(200) NOT NULL)");
+        }
+        connection.setAutoCommit(false);
+        insert = connection.prepareStatement("INSERT INTO id_insert_benchmark (id, payload) VALUES (?, ?)");
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int[] insertBatch() throws SQLException {
+        boolean v7 = "V7".equals(ids);
+        for (int i = 0; i < BATCH; i++) {
+            String id = v7 ? UuidV7.next() : UUID.randomUUID().toString();
+            insert.setString(1, id);
+            insert.setString(2, "{\"orderId\":\"" + id + "\",\"customerId\":\"customer-1\",\"total\":42.50}");
+            insert.addBatch();
+        }
+        int[] counts = insert.executeBatch();
+        connection.commit();
+        return counts;
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws Exception {
+        long rows;
+        try (Statement query = connection.createStatement();
+             ResultSet rs = query.executeQuery("SELECT count(*) FROM id_insert_benchmark")) {
+            rs.next();
+            rows = rs.getLong(1);
+        }
+        long bytes;
+        String measured;
+        if (h2File == null) {
+            try (Statement query = connection.createStatement();
+                 ResultSet rs = query.executeQuery("SELECT pg_relation_size('id_insert_benchmark_pkey')")) {
+                rs.next();
+                bytes = rs.getLong(1);
+            }
+            measured = "primary key index";
+            connection.close();
+        } else {
+            connection.close();
+            bytes = Files.size(h2File);
+            measured = "database file";
+        }
+        // the trials insert different row counts, so compare bytes per row
+        System.out.printf("%n%s ids: %d rows, %d bytes of %s (%.0f per row)%n",
+                ids, rows, bytes, measured, (double) bytes / rows);
+    }
+
+    private static void deleteRecursively(Path dir) throws IOException {
+        if (!Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try {
+                    Files.delete(path);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.sky_ecommerce.common;
+
+import com.sky_ecommerce.order.service.events.OrderEvents;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LazyEventEnvelopeTest {
+
+    private final EnvelopeCodec codec = TestEnvelopes.codec("t.CBOR=CBOR,t.SMILE=SMILE");
+    private final EnvelopeSerializer serializer = new EnvelopeSerializer(codec);
+
+    @ParameterizedTest
+    @EnumSource(EnvelopeFormat.class)
+    void metadataIsReadUpFrontAndThePayloadOnDemand(EnvelopeFormat format) {
+        EventEnvelope<OrderEvents.OrderCreated> sent = TestEnvelopes.orderCreated("o1");
+        byte[] data = codec.encode("t." + format, sent);
+
+        LazyEventEnvelope<Object> env = codec.decodeLazy(data);
+
+        assertThat(env.format()).isEqualTo(format);
+        assertThat(env.getId()).isEqualTo(sent.getId());
+        assertThat(env.getEventType()).isEqualTo("OrderCreated");
+        assertThat(env.getOccurredAt()).isEqualTo(sent.getOccurredAt());
+        assertThat(env.getPayload()).usingRecursiveComparison().isEqualTo(sent.getPayload());
+        assertThat(env.getPayload()).isSameAs(env.getPayload());
+        assertThat(env.unmodified()).isTrue();
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = EnvelopeFormat.class, names = {"JSON", "CBOR"})
+    void sliceableFormatsDecodeThePayloadFromItsOwnByteRange(EnvelopeFormat format) {
+        byte[] data = codec.encode("t." + format, TestEnvelopes.orderCreated("o1"));
+        LazyEventEnvelope<Object> env = codec.decodeLazy(data);
+
+        // wreck every byte ahead of the payload: only a decoder that jumps to the recorded offset still works
+        int payloadStart = indexOf(data, "orderId") - 8;
+        for (int i = 0; i < payloadStart; i++) {
+            data[i] = (byte) 0xFF;
+        }
+
+        assertThat(env.getPayload()).isInstanceOfSatisfying(OrderEvents.OrderCreated.class,
+                p -> assertThat(p.getOrderId()).isEqualTo("o1"));
+    }
+
+    @Test
+    void smileRescansTheRecordBecauseItsPayloadCannotBeCutOut() {
+        byte[] data = codec.encode("t.SMILE", TestEnvelopes.orderCreated("o1"));
+        LazyEventEnvelope<Object> env = codec.decodeLazy(data);
+        // same damage as above, sparing the Smile header: the re-scan now fails before reaching the payload
+        int payloadStart = indexOf(data, "orderId") - 8;
+        for (int i = 3; i < payloadStart; i++) {
+            data[i] = (byte) 0xFF;
+        }
+
+        assertThatThrownBy(env::getPayload).isInstanceOf(RuntimeException.class);
+    }
+
+    @ParameterizedTest
+    @EnumSource(EnvelopeFormat.class)
+    void unmodifiedEnvelopesAreForwardedAsTheirOriginalBytes(EnvelopeFormat format) {
+        byte[] data = codec.encode("t." + format, TestEnvelopes.orderCreated("o1"));
+        LazyEventEnvelope<Object> env = codec.decodeLazy(data);
+        env.getPayload();
+
+        assertThat(serializer.serialize("t." + format, new RecordHeaders(), env)).isSameAs(data);
+    }
+
+    @Test
+    void changedEnvelopesOrOtherFormatsAreEncodedAgain() {
+        byte[] data = codec.encode("t.JSON", TestEnvelopes.orderCreated("o1"));
+
+        LazyEventEnvelope<Object> other = codec.decodeLazy(data);
+        byte[] asCbor = serializer.serialize("t.CBOR", other);
+        assertThat(EnvelopeFormat.detect(asCbor)).isEqualTo(EnvelopeFormat.CBOR);
+
+        LazyEventEnvelope<Object> changed = codec.decodeLazy(data);
+        changed.setCorrelationId("corr-2");
+        assertThat(changed.unmodified()).isFalse();
+        byte[] reencoded = serializer.serialize("t.JSON", changed);
+        assertThat(reencoded).isNotSameAs(data);
+        assertThat(codec.decodeTyped(reencoded)).satisfies(env -> {
+            assertThat(env.getCorrelationId()).isEqualTo("corr-2");
+            assertThat(env.getPayload()).isInstanceOf(OrderEvents.OrderCreated.class);
+        });
+    }
+
+    @Test
+    void scalarAndMissingPayloadsNeedNoSecondPass() {
+        LazyEventEnvelope<Object> scalar = codec.decodeLazy(
+                "{\"id\":\"e1\",\"eventType\":\"Ping\",\"payload\":\"pong\"}".getBytes(StandardCharsets.UTF_8));
+        LazyEventEnvelope<Object> none = codec.decodeLazy(
+                "{\"id\":\"e2\",\"eventType\":\"Ping\"}".getBytes(StandardCharsets.UTF_8));
+
+        assertThat(scalar.getPayload()).isEqualTo("pong");
+        assertThat(none.getPayload()).isNull();
+    }
+
+    private static int indexOf(byte[] data, String ascii) {
+        byte[] needle = ascii.getBytes(StandardCharsets.US_ASCII);
+        outer:
+        for (int i = 0; i <= data.length - needle.length; i++) {
+            for (int j = 0; j < needle.length; j++) {
+                if (data[i + j] != needle[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        throw new AssertionError(ascii + " not found");
+    }
+}
@@ -0,0 +1,38 @@
+package com.sky_ecommerce.common;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RetryTopicsTest {
+
+    @Test
+    void attemptsWalkTheStagesThenTheDlt() {
+        assertThat(RetryTopics.next("order.events", 0)).isEqualTo("order.events.retry-1s");
+        assertThat(RetryTopics.next("order.events", 1)).isEqualTo("order.events.retry-10s");
+        assertThat(RetryTopics.next("order.events", 2)).isEqualTo("order.events.retry-60s");
+        assertThat(RetryTopics.next("order.events", 3)).isEqualTo("order.events.DLT");
+    }
+
+    @Test
+    void nextIsComputedFromTheBaseTopicWhenCalledOnARetryStage() {
+        assertThat(RetryTopics.next("order.events.retry-1s", 1)).isEqualTo("order.events.retry-10s");
+        assertThat(RetryTopics.next("order.events.retry-60s", 3)).isEqualTo("order.events.DLT");
+    }
+
+    @Test
+    void baseTopicStripsOnlyATrailingRetrySuffix() {
+        assertThat(RetryTopics.baseTopic("order.events.retry-10s")).isEqualTo("order.events");
+        assertThat(RetryTopics.baseTopic("order.events")).isEqualTo("order.events");
+        assertThat(RetryTopics.baseTopic("order.retry-1s.events")).isEqualTo("order.retry-1s.events");
+        assertThat(RetryTopics.baseTopic("order.events.DLT")).isEqualTo("order.events.DLT");
+    }
+
+    @Test
+    void retryTopicNamesTheStageForADelay() {
+        assertThat(RetryTopics.retryTopic("order.events.retry-1s", Duration.ofSeconds(60)))
+                .isEqualTo("order.events.retry-60s");
+    }
+}
@@ -0,0 +1,59 @@
+package com.sky_ecommerce.common;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sky_ecommerce.config.EventTypeConfig;
+import com.sky_ecommerce.order.service.events.OrderEvents;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/** Codec and envelope fixtures shared by the tests; the codec is wired like the application's. */
+public final class TestEnvelopes {
+
+    private TestEnvelopes() {
+    }
+
+    public static ObjectMapper objectMapper() {
+        // built like Spring Boot's mapper: a plain ObjectMapper, which the codec copies for CBOR/Smile
+        return Jackson2ObjectMapperBuilder.json().build();
+    }
+
+    public static EnvelopeCodec codec(String topicFormats, EventUpcaster... upcasters) {
+        return codec(new EventTypeConfig().eventTypeRegistry(), topicFormats, upcasters);
+    }
+
+    @SuppressWarnings("unchecked")
+    public static EnvelopeCodec codec(EventTypeRegistry registry, String topicFormats, EventUpcaster... upcasters) {
+        ObjectProvider<EventUpcaster> provider = mock(ObjectProvider.class);
+        when(provider.orderedStream()).thenAnswer(invocation -> List.of(upcasters).stream());
+        return new EnvelopeCodec(objectMapper(), registry, new EventUpcasterChain(registry, provider),
+                EnvelopeFormat.JSON, topicFormats);
+    }
+
+    public static EventEnvelope<OrderEvents.OrderCreated> orderCreated(String orderId) {
+        return new EventEnvelope<>(UuidV7.next(), OrderEvents.SCHEMA_VERSION, "OrderCreated", orderId,
+                Instant.parse("2026-01-01T00:00:00Z"), "corr-" + orderId, "test",
+                new OrderEvents.OrderCreated(orderId, "customer-1", new BigDecimal("42.50")));
+    }
+
+    /** An order.events record carrying only the eventType header, as the record filters see it. */
+    public static ConsumerRecord<String, byte[]> record(String eventType) {
+        ConsumerRecord<String, byte[]> record = new ConsumerRecord<>("order.events", 0, 0L, "o1", new byte[0]);
+        record.headers().add(EventHeaders.EVENT_TYPE, eventType.getBytes(StandardCharsets.UTF_8));
+        return record;
+    }
+
+    public static EventEnvelope<OrderEvents.OrderPaid> orderPaid(String orderId) {
+        return new EventEnvelope<>(UuidV7.next(), OrderEvents.SCHEMA_VERSION, "OrderPaid", orderId,
+                Instant.parse("2026-01-01T00:00:01Z"), "corr-" + orderId, "test",
+                new OrderEvents.OrderPaid(orderId));
+    }
+}
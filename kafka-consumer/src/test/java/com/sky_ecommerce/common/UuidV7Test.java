@@ -0,0 +1,67 @@
+package com.sky_ecommerce.common;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UuidV7Test {
+
+    @Test
+    void carriesVersionVariantAndTheCurrentMillisecond() {
+        long before = System.currentTimeMillis();
+        UUID id = UuidV7.nextUuid();
+        long after = System.currentTimeMillis();
+
+        assertThat(id.version()).isEqualTo(7);
+        assertThat(id.variant()).isEqualTo(2);
+        // the stamp runs ahead of the clock only by the milliseconds earlier bursts borrowed (4096 ids each)
+        assertThat(id.getMostSignificantBits() >>> 16).isBetween(before, after + 100);
+    }
+
+    @Test
+    void idsIncreaseAndTheirStringsSortTheSameWay() {
+        List<String> ids = new ArrayList<>();
+        // more than 4096 per millisecond forces the counter to borrow from the next millisecond
+        for (int i = 0; i < 20_000; i++) {
+            ids.add(UuidV7.next());
+        }
+
+        List<String> sorted = new ArrayList<>(ids);
+        Collections.sort(sorted);
+        assertThat(sorted).isEqualTo(ids);
+        assertThat(Set.copyOf(ids)).hasSize(ids.size());
+    }
+
+    @Test
+    void concurrentCallersNeverCollide() throws Exception {
+        Set<String> ids = ConcurrentHashMap.newKeySet();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                futures.add(pool.submit(() -> {
+                    for (int i = 0; i < 10_000; i++) {
+                        ids.add(UuidV7.next());
+                    }
+                }));
+            }
+            for (Future<?> f : futures) {
+                f.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        assertThat(ids).hasSize(80_000);
+    }
+}
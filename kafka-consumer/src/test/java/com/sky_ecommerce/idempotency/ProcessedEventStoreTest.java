@@ -0,0 +1,143 @@
+package com.sky_ecommerce.idempotency;
+
+import com.sky_ecommerce.common.GroupCommitExecutor;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.AutoConfigurationPackage;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/** Runs the native claim / cleanup statements against H2 in PostgreSQL mode; every test commits for real. */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ProcessedEventStoreTest {
+
+    @SpringBootConfiguration
+    @AutoConfigurationPackage(basePackageClasses = ProcessedEvent.class)
+    static class Config {
+    }
+
+    @Autowired
+    private ProcessedEventRepository repository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private ProcessedEventStore store;
+    private TransactionTemplate tx;
+
+    @BeforeEach
+    void setUp() {
+        GroupCommitExecutor groupCommit = new GroupCommitExecutor(transactionManager, false, 64, 0, 1);
+        // filter generations of two keys, so the tests can roll them over
+        store = new ProcessedEventStore(repository, groupCommit, transactionManager, meterRegistry,
+                Duration.ofDays(7), 2, 2, 0.01);
+        tx = new TransactionTemplate(transactionManager);
+    }
+
+    @AfterEach
+    void cleanUp() {
+        repository.deleteAllInBatch();
+    }
+
+    @Test
+    void onConflictClaimsOncePerConsumer() {
+        assertThat(claim("payment", "e1")).isTrue();
+        assertThat(claim("payment", "e1")).isFalse();
+        assertThat(claim("inventory", "e1")).isTrue();
+
+        assertThat(repository.count()).isEqualTo(2);
+        assertThat(store.seen("payment", "e1")).isTrue();
+        assertThat(store.seen("payment", "e2")).isFalse();
+    }
+
+    private boolean claim(String consumer, String eventId) {
+        return Boolean.TRUE.equals(tx.execute(s -> store.claim(consumer, eventId)));
+    }
+
+    @Test
+    void claimOutsideATransactionIsRejected() {
+        assertThatThrownBy(() -> store.claim("payment", "e1"))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("must run in the transaction of its work");
+        assertThat(repository.count()).isZero();
+    }
+
+    @Test
+    void failedWorkRollsItsClaimBack() {
+        List<String> ran = new ArrayList<>();
+
+        assertThatThrownBy(() -> store.runOnce("payment", "e1", () -> {
+            ran.add("first");
+            throw new IllegalStateException("order update failed");
+        })).hasMessage("order update failed");
+        store.runOnce("payment", "e1", () -> ran.add("redelivery"));
+        store.runOnce("payment", "e1", () -> ran.add("duplicate"));
+
+        assertThat(ran).containsExactly("first", "redelivery");
+    }
+
+    @Test
+    void batchRunOnceHandsOnlyUnprocessedItemsToTheWork() {
+        store.runOnce("payment", "e2", () -> { });
+        List<String> fresh = new ArrayList<>();
+
+        store.runOnce("payment", List.of("e1", "e2", "e3"), id -> id, fresh::addAll);
+
+        assertThat(fresh).containsExactly("e1", "e3");
+    }
+
+    @Test
+    void filterAnswersFreshKeysAndKeysOlderThanTwoGenerationsStillNeverRunTwice() {
+        for (String id : List.of("e1", "e2", "e3", "e4")) {
+            store.runOnce("payment", id, () -> { });
+        }
+
+        // e3/e4 are in the previous generation: looked up and found
+        assertThat(store.seen("payment", "e3")).isTrue();
+        assertThat(meterRegistry.counter("idempotency.duplicates").count()).isEqualTo(1);
+        // fresh, and e1 rolled out of both generations: answered without a lookup
+        assertThat(store.seen("payment", "e9")).isFalse();
+        assertThat(store.seen("payment", "e1")).isFalse();
+        assertThat(meterRegistry.counter("idempotency.filter.misses").count()).isEqualTo(2);
+
+        // the forgotten key only cost the lookup: the claim still refuses to run it again
+        List<String> ran = new ArrayList<>();
+        store.runOnce("payment", "e1", () -> ran.add("e1"));
+        assertThat(ran).isEmpty();
+    }
+
+    @Test
+    void cleanupDeletesExpiredMarkersInChunks() {
+        Instant old = Instant.now().minus(Duration.ofDays(8));
+        tx.executeWithoutResult(s -> {
+            for (int i = 0; i < 5; i++) {
+                repository.claim("payment", "old-" + i, old);
+            }
+            repository.claim("payment", "fresh", Instant.now());
+        });
+
+        store.cleanup();
+
+        assertThat(repository.findAll()).extracting(ProcessedEvent::getEventId).containsExactly("fresh");
+    }
+}
@@ -0,0 +1,148 @@
+package com.sky_ecommerce.listeners;
+
+import com.sky_ecommerce.common.EnvelopeCodec;
+import com.sky_ecommerce.common.EventEnvelope;
+import com.sky_ecommerce.common.TestEnvelopes;
+import com.sky_ecommerce.idempotency.ProcessedEventStore;
+import com.sky_ecommerce.order.service.OrderService;
+import com.sky_ecommerce.order.service.events.OrderEvents;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.listener.BatchListenerFailedException;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.kafka.support.converter.ConversionException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.catchThrowableOfType;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class EcommerceListenersBatchTest {
+
+    private final EnvelopeCodec codec = TestEnvelopes.codec("");
+    private final OrderService orderService = mock(OrderService.class);
+    private final ProcessedEventStore processedEvents = mock(ProcessedEventStore.class);
+    private final Acknowledgment ack = mock(Acknowledgment.class);
+    private final List<List<String>> applied = new ArrayList<>();
+
+    private EcommerceListeners listeners;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        // the store runs the work directly; claims are covered by ProcessedEventStoreTest
+        doAnswer(invocation -> {
+            ((Consumer<List<Object>>) invocation.getArgument(3)).accept(invocation.getArgument(1));
+            return null;
+        }).when(processedEvents).runOnce(anyString(), anyList(), any(), any());
+        doAnswer(invocation -> {
+            ((Runnable) invocation.getArgument(2)).run();
+            return null;
+        }).when(processedEvents).runOnce(anyString(), anyString(), any(Runnable.class));
+        listeners = new EcommerceListeners(orderService, processedEvents, codec, mock(KeyOrderedBatchProcessor.class));
+    }
+
+    @Test
+    void appliesAWholePollAndAcknowledgesIt() {
+        recordApplies(null);
+
+        listeners.onOrderCreatedBatch(List.of(created(0, "o1"), created(1, "o2")), ack);
+
+        assertThat(applied).containsExactly(List.of("o1", "o2"));
+        verify(ack).acknowledge();
+    }
+
+    @Test
+    void failedBatchIsReappliedPerOrderAndFailsAtTheOffendingRecord() {
+        recordApplies("o2");
+        List<ConsumerRecord<String, byte[]>> records = List.of(created(0, "o1"), created(2, "o2"), created(4, "o3"));
+
+        BatchListenerFailedException failure = catchThrowableOfType(
+                () -> listeners.onOrderCreatedBatch(records, ack), BatchListenerFailedException.class);
+
+        assertThat(failure.getRecord()).isSameAs(records.get(1));
+        // the batch attempt, then o1 alone (kept), then o2 alone (fails); o3 is redelivered later
+        assertThat(applied).containsExactly(List.of("o1", "o2", "o3"), List.of("o1"), List.of("o2"));
+        verify(ack, never()).acknowledge();
+    }
+
+    @Test
+    void undecodableRecordFailsAfterTheRecordsBeforeItAreApplied() {
+        recordApplies(null);
+        ConsumerRecord<String, byte[]> bad = new ConsumerRecord<>("order.events", 0, 1, "o2",
+                "not an envelope".getBytes(StandardCharsets.UTF_8));
+        List<ConsumerRecord<String, byte[]>> records = List.of(created(0, "o1"), bad, created(2, "o3"));
+
+        BatchListenerFailedException failure = catchThrowableOfType(
+                () -> listeners.onOrderCreatedBatch(records, ack), BatchListenerFailedException.class);
+
+        assertThat(failure.getRecord()).isSameAs(bad);
+        // the error handler's fatal check sends ConversionExceptions straight to the DLT
+        assertThat(failure.getCause()).isInstanceOf(ConversionException.class).hasMessageContaining("order.events-0@1");
+        assertThat(applied).containsExactly(List.of("o1"));
+        verify(ack, never()).acknowledge();
+    }
+
+    @Test
+    void missingPayloadInABatchFailsAsTheSameConversionError() {
+        recordApplies(null);
+        // the envelope itself reads fine; the OrderCreated payload it promises is missing
+        EventEnvelope<?> empty = new EventEnvelope<>("e2", OrderEvents.SCHEMA_VERSION, "OrderCreated", "o2",
+                Instant.now(), "corr-o2", "test", null);
+        ConsumerRecord<String, byte[]> bad = new ConsumerRecord<>("order.events", 0, 1, "o2",
+                codec.encode("order.events", empty));
+        List<ConsumerRecord<String, byte[]>> records = List.of(created(0, "o1"), bad, created(2, "o3"));
+
+        BatchListenerFailedException failure = catchThrowableOfType(
+                () -> listeners.onOrderCreatedBatch(records, ack), BatchListenerFailedException.class);
+
+        assertThat(failure.getRecord()).isSameAs(bad);
+        assertThat(failure.getCause()).isInstanceOf(ConversionException.class)
+                .hasMessageContaining("expected " + OrderEvents.OrderCreated.class.getName());
+        assertThat(applied).containsExactly(List.of("o1"));
+    }
+
+    @Test
+    void payloadOfTheWrongClassFailsAsAConversionErrorNamingBothTypes() {
+        EventEnvelope<?> mislabelled = new EventEnvelope<>("e1", OrderEvents.SCHEMA_VERSION, "OrderCreated", "o1",
+                Instant.now(), "corr-o1", "test", new OrderEvents.OrderPaid("o1"));
+
+        assertThatThrownBy(() -> listeners.handlePayment(mislabelled))
+                .isInstanceOf(ConversionException.class)
+                .hasMessageContaining("OrderCreated")
+                .hasMessageContaining(OrderEvents.OrderPaid.class.getName())
+                .hasMessageContaining("expected " + OrderEvents.OrderCreated.class.getName());
+        verify(orderService, never()).markPaid(anyString(), anyString());
+    }
+
+    // records each applyPayments call; calls that include failingOrder throw
+    private void recordApplies(String failingOrder) {
+        doAnswer(invocation -> {
+            List<OrderService.PaymentOutcome> outcomes = invocation.getArgument(0);
+            List<String> orders = outcomes.stream().map(OrderService.PaymentOutcome::orderId).toList();
+            applied.add(orders);
+            if (orders.contains(failingOrder)) {
+                throw new IllegalStateException("cannot settle " + failingOrder);
+            }
+            return null;
+        }).when(orderService).applyPayments(anyList());
+    }
+
+    private ConsumerRecord<String, byte[]> created(long offset, String orderId) {
+        return new ConsumerRecord<>("order.events", 0, offset, orderId,
+                codec.encode("order.events", TestEnvelopes.orderCreated(orderId)));
+    }
+}
@@ -0,0 +1,202 @@
+package com.sky_ecommerce.listeners;
+
+import com.sky_ecommerce.common.EnvelopeCodec;
+import com.sky_ecommerce.common.EventEnvelope;
+import com.sky_ecommerce.common.EventHeaders;
+import com.sky_ecommerce.common.GroupCommitExecutor;
+import com.sky_ecommerce.common.TestEnvelopes;
+import com.sky_ecommerce.config.KafkaEcommerceConfig;
+import com.sky_ecommerce.idempotency.ProcessedEvent;
+import com.sky_ecommerce.idempotency.ProcessedEventRepository;
+import com.sky_ecommerce.idempotency.ProcessedEventStore;
+import com.sky_ecommerce.order.service.OrderService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.AutoConfigurationPackage;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.kafka.annotation.EnableKafka;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.ContainerTestUtils;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mockingDetails;
+
+/**
+ * The record-mode listeners on an embedded broker, wired with the application's container factories and
+ * error handling: redeliveries are applied once through processed_events (H2), failures move to the
+ * first retry stage, and records that cannot be decoded go straight to the DLT.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@EmbeddedKafka(partitions = 3, bootstrapServersProperty = "spring.kafka.bootstrap-servers", topics = {
+        "order.events", "order.events.retry-1s", "order.events.retry-10s", "order.events.retry-60s",
+        "order.events.DLT"})
+class EcommerceListenersIT {
+
+    private static final String TOPIC = "order.events";
+    private static final String FIRST_RETRY = "order.events.retry-1s";
+    private static final String DLT = "order.events.DLT";
+
+    @SpringBootConfiguration
+    @AutoConfigurationPackage(basePackageClasses = ProcessedEvent.class)
+    @EnableKafka
+    @Import({KafkaEcommerceConfig.class, EcommerceListeners.class, KeyOrderedBatchProcessor.class,
+            ProcessedEventStore.class, GroupCommitExecutor.class})
+    static class Config {
+
+        @Bean
+        EnvelopeCodec envelopeCodec() {
+            return TestEnvelopes.codec("");
+        }
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+
+    @MockBean
+    private OrderService orderService;
+    @Autowired
+    private ProcessedEventRepository processedEvents;
+    @Autowired
+    private EnvelopeCodec codec;
+    @Autowired
+    @Qualifier("ecommerceRawKafkaTemplate")
+    private KafkaTemplate<String, byte[]> template;
+    @Autowired
+    private KafkaListenerEndpointRegistry registry;
+    @Autowired
+    private EmbeddedKafkaBroker broker;
+
+    private Consumer<String, byte[]> failures;
+
+    @BeforeEach
+    void setUp() {
+        // listeners start at the latest offset, so nothing may be sent before they own their partitions
+        for (MessageListenerContainer container : registry.getListenerContainers()) {
+            if (container.isRunning()) {
+                ContainerTestUtils.waitForAssignment(container, broker.getPartitionsPerTopic());
+            }
+        }
+        Map<String, Object> props = KafkaTestUtils.consumerProps("listeners-it-failures", "false", broker);
+        failures = new DefaultKafkaConsumerFactory<>(props, new StringDeserializer(), new ByteArrayDeserializer())
+                .createConsumer();
+        broker.consumeFromEmbeddedTopics(failures, FIRST_RETRY, DLT);
+        // the broker is shared by the tests: only read what this test causes
+        failures.seekToEnd(failures.assignment());
+        failures.assignment().forEach(failures::position);
+    }
+
+    @AfterEach
+    void tearDown() {
+        failures.close();
+        processedEvents.deleteAllInBatch();
+    }
+
+    @Test
+    void redeliveredOrderCreatedSettlesThePaymentOnce() throws Exception {
+        EventEnvelope<?> created = TestEnvelopes.orderCreated("o1");
+
+        send(created);
+        RecordMetadata redelivery = send(created);
+
+        awaitCommitted("payment-simulator", redelivery);
+        // the payment simulator either marks the order paid or cancels it, exactly once
+        assertThat(mockingDetails(orderService).getInvocations()).hasSize(1);
+        assertThat(processedEvents.count()).isEqualTo(1);
+    }
+
+    @Test
+    void failedPaymentMovesToTheFirstRetryStageWithTheFailingGroup() throws Exception {
+        doThrow(new IllegalStateException("database down")).when(orderService).markPaid(anyString(), anyString());
+        doThrow(new IllegalStateException("database down")).when(orderService).cancel(anyString(), anyString(), anyString());
+        EventEnvelope<?> created = TestEnvelopes.orderCreated("o2");
+
+        send(created);
+
+        ConsumerRecord<String, byte[]> retry = KafkaTestUtils.getSingleRecord(failures, FIRST_RETRY, Duration.ofSeconds(10));
+        assertThat(retry.key()).isEqualTo("o2");
+        assertThat(retry.value()).isEqualTo(codec.encode(TOPIC, created));
+        assertThat(EventHeaders.read(retry.headers(), EventHeaders.RETRY_ATTEMPT)).isEqualTo("1");
+        assertThat(EventHeaders.read(retry.headers(), EventHeaders.RETRY_GROUP)).isEqualTo("payment-simulator");
+        assertThat(EventHeaders.read(retry.headers(), EventHeaders.EVENT_TYPE)).isEqualTo("OrderCreated");
+        // the claim rolled back with the failed settlement, so the retry will apply it
+        assertThat(processedEvents.count()).isZero();
+    }
+
+    @Test
+    void undecodableRecordGoesStraightToTheDlt() {
+        byte[] garbage = "not an envelope".getBytes(StandardCharsets.UTF_8);
+        ProducerRecord<String, byte[]> record = new ProducerRecord<>(TOPIC, "o3", garbage);
+        EventHeaders.write(record.headers(), "OrderCreated", 1, "corr-o3");
+
+        template.send(record).join();
+
+        // the payment and inventory groups both accept OrderCreated and both dead-letter it
+        List<ConsumerRecord<String, byte[]>> dead = new ArrayList<>();
+        await().atMost(Duration.ofSeconds(10)).until(() -> {
+            failures.poll(Duration.ofMillis(200)).forEach(dead::add);
+            return dead.size() >= 2;
+        });
+        assertThat(dead).extracting(ConsumerRecord::topic).containsOnly(DLT);
+        assertThat(dead).allSatisfy(r -> {
+            assertThat(r.value()).isEqualTo(garbage);
+            assertThat(EventHeaders.read(r.headers(), EventHeaders.RETRY_ATTEMPT)).isNull();
+        });
+        assertThat(mockingDetails(orderService).getInvocations()).isEmpty();
+    }
+
+    private RecordMetadata send(EventEnvelope<?> envelope) throws Exception {
+        ProducerRecord<String, byte[]> record = new ProducerRecord<>(TOPIC, envelope.getSubjectId(),
+                codec.encode(TOPIC, envelope));
+        EventHeaders.write(record.headers(), envelope);
+        return template.send(record).get().getRecordMetadata();
+    }
+
+    // the listener acknowledged the record: everything before it on its partition is handled too
+    private void awaitCommitted(String group, RecordMetadata sent) {
+        await().atMost(Duration.ofSeconds(10)).until(() -> {
+            OffsetAndMetadata committed = KafkaTestUtils.getCurrentOffset(broker.getBrokersAsString(), group,
+                    sent.topic(), sent.partition());
+            return committed != null && committed.offset() > sent.offset();
+        });
+    }
+}
@@ -0,0 +1,188 @@
+package com.sky_ecommerce.listeners;
+
+import com.sky_ecommerce.common.EventHeaders;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.listener.BatchListenerFailedException;
+import org.springframework.kafka.listener.ConsumerRecordRecoverer;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.listener.DefaultErrorHandler;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.util.backoff.FixedBackOff;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.catchThrowableOfType;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class KeyOrderedBatchProcessorTest {
+
+    private static final String TOPIC = "order.events";
+    private static final TopicPartition TP0 = new TopicPartition(TOPIC, 0);
+
+    private final ExecutorService pool = Executors.newFixedThreadPool(4);
+    private final KeyOrderedBatchProcessor processor = new KeyOrderedBatchProcessor(pool);
+
+    @AfterEach
+    void shutdown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    void completesAllLanesAndKeepsPerKeyOrder() {
+        List<ConsumerRecord<String, byte[]>> records = List.of(
+                record(0, 0, "a"), record(0, 1, "b"), record(0, 2, "a"), record(1, 0, "a"), record(0, 3, "a"));
+        List<String> seen = Collections.synchronizedList(new ArrayList<>());
+
+        processor.process(records, r -> seen.add(r.partition() + ":" + r.key() + "@" + r.offset()));
+
+        assertThat(seen).hasSize(5);
+        assertThat(seen.stream().filter(s -> s.startsWith("0:a")).toList())
+                .containsExactly("0:a@0", "0:a@2", "0:a@3");
+    }
+
+    @Test
+    void failureStopsItsLaneAndTheErrorHandlerCommitsOnlyWhatPrecedesIt() {
+        TopicPartition tp1 = new TopicPartition(TOPIC, 1);
+        List<ConsumerRecord<String, byte[]>> records = List.of(
+                record(0, 0, "a"), record(0, 1, "b"), record(0, 2, "a"), record(0, 3, "b"), record(1, 0, "c"));
+        List<Long> seen = Collections.synchronizedList(new ArrayList<>());
+
+        BatchListenerFailedException failure = catchThrowableOfType(() -> processor.process(records, r -> {
+            seen.add(r.offset() * 10 + r.partition());
+            if ("b".equals(r.key()) && r.offset() == 1) {
+                throw new IllegalStateException("boom");
+            }
+        }), BatchListenerFailedException.class);
+
+        assertThat(failure.getRecord()).isSameAs(records.get(1));
+        assertThat(failure.getCause()).hasMessage("boom");
+        // key b's later record waits behind its failure
+        assertThat(seen).doesNotContain(30L);
+
+        // the only commit is the error handler's: the failed record (recovered) and everything before it in
+        // the poll, whose order is the order of the listener's list
+        Map<TopicPartition, List<ConsumerRecord<String, byte[]>>> poll = new LinkedHashMap<>();
+        poll.put(TP0, records.subList(0, 4));
+        poll.put(tp1, records.subList(4, 5));
+        Consumer<String, byte[]> consumer = mock(Consumer.class);
+        assertThatThrownBy(() -> errorHandler((r, e) -> { }).handleBatch(failure, new ConsumerRecords<>(poll),
+                consumer, container(), () -> { })).hasRootCauseMessage("boom");
+        verify(consumer).commitSync(eq(Map.of(TP0, new OffsetAndMetadata(2))), any());
+        verify(consumer).seek(TP0, 2L);
+        verify(consumer).seek(tp1, 0L);
+
+        // partition 1's record completed ahead of the failure: redelivered, but not run again
+        seen.clear();
+        processor.process(List.of(records.get(2), records.get(3), records.get(4)),
+                r -> seen.add(r.offset() * 10 + r.partition()));
+        assertThat(seen).containsExactly(30L);
+    }
+
+    @Test
+    void revokedPartitionForgetsRecordsCompletedAheadOfTheFailure() {
+        List<ConsumerRecord<String, byte[]>> first = List.of(record(0, 0, "a"), record(0, 1, "b"), record(0, 2, "a"));
+        assertThatThrownBy(() -> processor.process(first, r -> {
+            if ("b".equals(r.key())) {
+                throw new IllegalStateException("boom");
+            }
+        })).isInstanceOf(BatchListenerFailedException.class);
+
+        // another consumer processed the partition meanwhile; when it comes back, offset 2 is new work again
+        processor.onPartitionsRevoked(List.of(TP0));
+        List<Long> seen = Collections.synchronizedList(new ArrayList<>());
+        processor.process(first.subList(1, 3), r -> seen.add(r.offset()));
+        assertThat(seen).containsExactlyInAnyOrder(1L, 2L);
+    }
+
+    @Test
+    void redeliveredTailSkipsRecordsCompletedAheadOfTheFailure() {
+        List<ConsumerRecord<String, byte[]>> first = List.of(record(0, 0, "a"), record(0, 1, "b"), record(0, 2, "a"));
+        assertThatThrownBy(() -> processor.process(first, r -> {
+            if ("b".equals(r.key())) {
+                throw new IllegalStateException("boom");
+            }
+        })).isInstanceOf(BatchListenerFailedException.class);
+
+        // the error handler redelivers from the failed record on
+        List<Long> seen = Collections.synchronizedList(new ArrayList<>());
+        processor.process(first.subList(1, 3), r -> seen.add(r.offset()));
+        assertThat(seen).containsExactly(1L);
+
+        // the skip is one-shot: a later rewind over the same offset processes it again
+        seen.clear();
+        processor.process(first.subList(2, 3), r -> seen.add(r.offset()));
+        assertThat(seen).containsExactly(2L);
+    }
+
+    @Test
+    void mixedTypePollRecoversTheRecordThatFailedNotTheIndexInTheFilteredList() {
+        // full poll: OrderCreated / OrderPaid interleaved; orderCreatedFilter hands only OrderCreated on
+        List<ConsumerRecord<String, byte[]>> poll = List.of(
+                typed(0, "o1", "OrderCreated"), typed(1, "o1", "OrderPaid"),
+                typed(2, "o2", "OrderCreated"), typed(3, "o2", "OrderPaid"),
+                typed(4, "o3", "OrderCreated"));
+        List<ConsumerRecord<String, byte[]>> filtered = poll.stream()
+                .filter(r -> "OrderCreated".equals(EventHeaders.read(r.headers(), EventHeaders.EVENT_TYPE)))
+                .toList();
+        Consumer<String, byte[]> consumer = mock(Consumer.class);
+
+        BatchListenerFailedException failure = catchThrowableOfType(() -> processor.process(filtered, r -> {
+            if ("o2".equals(r.key())) {
+                throw new IllegalStateException("payment failed");
+            }
+        }), BatchListenerFailedException.class);
+
+        List<ConsumerRecord<?, ?>> recovered = new ArrayList<>();
+
+        // the handler signals the seek back to the container by rethrowing
+        assertThatThrownBy(() -> errorHandler((r, e) -> recovered.add(r)).handleBatch(failure,
+                new ConsumerRecords<>(Map.of(TP0, poll)), consumer, container(), () -> { }))
+                .hasRootCauseMessage("payment failed");
+
+        assertThat(recovered).singleElement().extracting(ConsumerRecord::offset).isEqualTo(2L);
+        verify(consumer).seek(TP0, 3L);
+        verify(consumer, never()).seek(any(TopicPartition.class), eq(2L));
+    }
+
+    // as configured for the listener containers: no retries in place, the recoverer takes the record at once
+    private static DefaultErrorHandler errorHandler(ConsumerRecordRecoverer recoverer) {
+        return new DefaultErrorHandler(recoverer, new FixedBackOff(0L, 0L));
+    }
+
+    private static MessageListenerContainer container() {
+        MessageListenerContainer container = mock(MessageListenerContainer.class);
+        when(container.getContainerProperties()).thenReturn(new ContainerProperties(TOPIC));
+        when(container.isRunning()).thenReturn(true);
+        return container;
+    }
+
+    private static ConsumerRecord<String, byte[]> record(int partition, long offset, String key) {
+        return new ConsumerRecord<>(TOPIC, partition, offset, key, new byte[0]);
+    }
+
+    private static ConsumerRecord<String, byte[]> typed(long offset, String key, String eventType) {
+        ConsumerRecord<String, byte[]> record = record(0, offset, key);
+        record.headers().add(EventHeaders.EVENT_TYPE, eventType.getBytes(StandardCharsets.UTF_8));
+        return record;
+    }
+}
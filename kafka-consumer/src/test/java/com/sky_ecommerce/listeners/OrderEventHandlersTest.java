@@ -0,0 +1,92 @@
+package com.sky_ecommerce.listeners;
+
+import com.sky_ecommerce.common.EventDispatchException;
+import com.sky_ecommerce.common.EventEnvelope;
+import com.sky_ecommerce.common.TestEnvelopes;
+import com.sky_ecommerce.idempotency.ProcessedEventStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowableOfType;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class OrderEventHandlersTest {
+
+    private final EcommerceListeners listeners = mock(EcommerceListeners.class);
+    private final ProcessedEventStore processedEvents = mock(ProcessedEventStore.class);
+    // stands in for processed_events: a marker exists only if the work in its transaction completed
+    private final Set<String> markers = ConcurrentHashMap.newKeySet();
+    private final List<String> ran = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        when(processedEvents.seen(anyString(), anyString()))
+                .thenAnswer(invocation -> markers.contains(invocation.getArgument(0) + "/" + invocation.getArgument(1)));
+        doAnswer(invocation -> {
+            String marker = invocation.getArgument(0) + "/" + invocation.getArgument(1);
+            if (!markers.contains(marker)) {
+                ((Runnable) invocation.getArgument(2)).run();
+                markers.add(marker);
+            }
+            return null;
+        }).when(processedEvents).runOnce(anyString(), anyString(), any(Runnable.class));
+        doAnswer(invocation -> ran.add("payment")).when(listeners).handlePayment(any());
+        doAnswer(invocation -> ran.add("notification")).when(listeners).handleNotification(any());
+    }
+
+    @Test
+    void redeliveryRunsOnlyTheHandlersThatHaveNotCompletedTheEvent() {
+        doAnswer(invocation -> {
+            ran.add("inventory");
+            throw new IllegalStateException("stock service down");
+        }).when(listeners).handleInventory(any());
+        EventEnvelope<?> env = TestEnvelopes.orderCreated("o1");
+
+        EventDispatchException failure = catchThrowableOfType(
+                () -> handlers().dispatch(env, null), EventDispatchException.class);
+        assertThat(failure.getHandlers()).containsExactly("inventory");
+        assertThat(ran).containsExactly("payment", "inventory");
+
+        // redelivered after a restart: progress comes from the store, not from the old instance
+        ran.clear();
+        doAnswer(invocation -> ran.add("inventory")).when(listeners).handleInventory(any());
+        handlers().dispatch(env, null);
+
+        assertThat(ran).containsExactly("inventory");
+        assertThat(markers).containsExactlyInAnyOrder("handler:payment/" + env.getId(), "handler:inventory/" + env.getId());
+    }
+
+    @Test
+    void onlyRestrictsTheHandlersAndEventTypeSelectsThem() {
+        OrderEventHandlers handlers = handlers();
+
+        handlers.dispatch(TestEnvelopes.orderCreated("o1"), Set.of("payment"));
+        handlers.dispatch(TestEnvelopes.orderPaid("o1"), null);
+
+        assertThat(ran).containsExactly("payment", "notification");
+    }
+
+    @Test
+    void filterDropsEventTypesNoHandlerSubscribesTo() {
+        OrderEventHandlers handlers = handlers();
+
+        assertThat(handlers.filter(TestEnvelopes.record("OrderShipped"))).isTrue();
+        assertThat(handlers.filter(TestEnvelopes.record("OrderPaid"))).isFalse();
+        assertThat(handlers.forGroup("inventory-simulator")).containsExactly("inventory");
+        assertThat(handlers.forGroup("order-events-dispatcher")).isNull();
+    }
+
+    private OrderEventHandlers handlers() {
+        return new OrderEventHandlers(listeners, processedEvents);
+    }
+}
@@ -0,0 +1,55 @@
+package com.sky_ecommerce.outbox;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OutboxBatchSizerTest {
+
+    @Test
+    void initialSizeIsClampedToTheBounds() {
+        assertThat(new OutboxBatchSizer(5, 10, 1000, 500).current()).isEqualTo(10);
+        assertThat(new OutboxBatchSizer(5000, 10, 1000, 500).current()).isEqualTo(1000);
+        assertThat(new OutboxBatchSizer(50, 0, 0, 500).current()).isEqualTo(1);
+    }
+
+    @Test
+    void fullFastBatchesGrowByAQuarterUpToMax() {
+        OutboxBatchSizer sizer = new OutboxBatchSizer(100, 10, 180, 500);
+
+        sizer.record(100, 0, 50);
+        assertThat(sizer.current()).isEqualTo(125);
+        sizer.record(125, 0, 50);
+        assertThat(sizer.current()).isEqualTo(156);
+        sizer.record(156, 0, 50);
+        assertThat(sizer.current()).isEqualTo(180);
+    }
+
+    @Test
+    void smallSizesStillGrow() {
+        OutboxBatchSizer sizer = new OutboxBatchSizer(2, 1, 100, 500);
+
+        sizer.record(2, 0, 10);
+
+        assertThat(sizer.current()).isEqualTo(3);
+    }
+
+    @Test
+    void partialBatchKeepsTheSize() {
+        OutboxBatchSizer sizer = new OutboxBatchSizer(100, 10, 1000, 500);
+
+        sizer.record(40, 0, 50);
+
+        assertThat(sizer.current()).isEqualTo(100);
+    }
+
+    @Test
+    void failuresAndSlowBatchesHalveDownToMin() {
+        OutboxBatchSizer sizer = new OutboxBatchSizer(100, 30, 1000, 500);
+
+        sizer.record(100, 1, 50);
+        assertThat(sizer.current()).isEqualTo(50);
+        sizer.record(50, 0, 501);
+        assertThat(sizer.current()).isEqualTo(30);
+    }
+}
@@ -0,0 +1,147 @@
+package com.sky_ecommerce.outbox;
+
+import com.sky_ecommerce.common.EnvelopeCodec;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.AutoConfigurationPackage;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.AdditionalAnswers.delegatesTo;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/** Two relay nodes claiming from the same outbox table on H2 in PostgreSQL mode; every claim commits for real. */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class OutboxClaimTest {
+
+    @SpringBootConfiguration
+    @AutoConfigurationPackage(basePackageClasses = OutboxEntity.class)
+    static class Config {
+    }
+
+    @Autowired
+    private OutboxRepository repository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @AfterEach
+    void cleanUp() {
+        repository.deleteAllInBatch();
+    }
+
+    @Test
+    void laterRowOfAKeyIsNotClaimedWhileAnotherNodesClaimOnTheEarlierRowIsUncommitted() throws Exception {
+        Instant t0 = Instant.now().minusSeconds(10);
+        repository.saveAll(List.of(row("a-1", "order-a", t0), row("a-2", "order-a", t0.plusMillis(1)),
+                row("b-1", "order-b", t0.plusMillis(2))));
+
+        // node 1 has claimed order-a's first row: locked and leased, not committed yet. Leased directly
+        // rather than through findPending, because H2 locks every row a FOR UPDATE select reads, not
+        // just the ones within its LIMIT
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Void> node1 = CompletableFuture.runAsync(() ->
+                new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                    repository.lease(List.of("a-1"), "node-1", Instant.now().plusSeconds(30));
+                    locked.countDown();
+                    await(release);
+                }));
+        assertThat(locked.await(10, TimeUnit.SECONDS)).isTrue();
+
+        List<OutboxEntity> claimed;
+        try {
+            claimed = service(skippingLocked(Set.of("a-1")), "node-2").claimBatch(10);
+        } finally {
+            release.countDown();
+        }
+        node1.get(10, TimeUnit.SECONDS);
+
+        assertThat(claimed).extracting(OutboxEntity::getId).containsExactly("b-1");
+        assertThat(repository.findById("a-2")).get().extracting(OutboxEntity::getLeaseOwner).isNull();
+        assertThat(repository.findById("a-1")).get().extracting(OutboxEntity::getLeaseOwner).isEqualTo("node-1");
+    }
+
+    @Test
+    void rowsOfAKeyClaimedTogetherInCreationOrderAreAllKept() {
+        Instant t0 = Instant.now().minusSeconds(10);
+        repository.saveAll(List.of(row("a-1", "order-a", t0), row("a-2", "order-a", t0.plusMillis(1)),
+                row("a-3", "order-a", t0.plusMillis(2))));
+
+        // a batch that stops partway through the key keeps the rows before the cut
+        List<OutboxEntity> first = service(repository, "node-1").claimBatch(2);
+        assertThat(first).extracting(OutboxEntity::getId).containsExactly("a-1", "a-2");
+
+        // the rest waits behind the leased rows, on this node and any other
+        assertThat(service(repository, "node-2").claimBatch(10)).isEmpty();
+    }
+
+    // H2 has no SKIP LOCKED (Hibernate falls back to a plain FOR UPDATE, which would wait), so node 2's
+    // select leaves out the rows node 1 holds locked the way Postgres does; every other call hits H2
+    private OutboxRepository skippingLocked(Set<String> lockedIds) {
+        OutboxRepository skipping = mock(OutboxRepository.class, delegatesTo(repository));
+        doAnswer(invocation -> repository.findAll().stream()
+                .filter(e -> "PENDING".equals(e.getStatus()) && !lockedIds.contains(e.getId()))
+                .filter(e -> e.getLeaseUntil() == null || e.getLeaseUntil().isBefore(invocation.getArgument(0)))
+                .sorted(Comparator.comparing(OutboxEntity::getCreatedAt))
+                .toList())
+                .when(skipping).findPending(any(), anyInt(), anyInt(), any());
+        return skipping;
+    }
+
+    @SuppressWarnings("unchecked")
+    private OutboxService service(OutboxRepository repository, String nodeId) {
+        OutboxCoordinator coordinator = mock(OutboxCoordinator.class);
+        when(coordinator.range()).thenReturn(new int[]{0, OutboxCoordinator.BUCKETS});
+        return new OutboxService(repository, mock(EnvelopeCodec.class), mock(KafkaTemplate.class),
+                mock(ObjectProvider.class), transactionManager, mock(OutboxRelaySignal.class),
+                mock(OutboxRetryPolicy.class), mock(OutboxBatchSizer.class), mock(OutboxMetrics.class), coordinator,
+                1, 30000, OutboxCodec.NONE, 1, 256, new OutboxNode(nodeId), Runnable::run, Runnable::run);
+    }
+
+    private static OutboxEntity row(String id, String key, Instant createdAt) {
+        OutboxEntity e = new OutboxEntity();
+        e.setId(id);
+        e.setTopic("order.events");
+        e.setKey(key);
+        e.setKeyBucket(OutboxCoordinator.bucketOf(key));
+        e.setEnvelope(id.getBytes());
+        e.setCreatedAt(createdAt);
+        e.setNextAttemptAt(createdAt);
+        e.setAttempts(0);
+        e.setStatus("PENDING");
+        return e;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
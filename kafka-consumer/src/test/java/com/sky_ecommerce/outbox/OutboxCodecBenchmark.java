@@ -0,0 +1,74 @@
+package com.sky_ecommerce.outbox;
+
+import com.sky_ecommerce.common.EnvelopeCodec;
+import com.sky_ecommerce.common.TestEnvelopes;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Storage codec trade-off on 10k OrderCreated envelopes (JSON wire bytes): {@code encode} is the extra CPU
+ * on append, {@code decode} the extra CPU on relay. Setup prints raw vs stored bytes for the batch, i.e. the
+ * envelope column's share of table size and WAL volume.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OutboxCodecBenchmark {
+
+    private static final int ROWS = 10_000;
+
+    @Param({"NONE", "DEFLATE"})
+    public OutboxCodec codec;
+
+    @Param({"1", "6"})
+    public int level;
+
+    private byte[][] raw;
+    private byte[][] stored;
+
+    @Setup
+    public void setUp() {
+        EnvelopeCodec envelopes = TestEnvelopes.codec("");
+        raw = new byte[ROWS][];
+        stored = new byte[ROWS][];
+        long rawBytes = 0;
+        long storedBytes = 0;
+        for (int i = 0; i < ROWS; i++) {
+            raw[i] = envelopes.encode("order.events", TestEnvelopes.orderCreated("order-" + i));
+            stored[i] = codec.encode(raw[i], level);
+            rawBytes += raw[i].length;
+            storedBytes += stored[i].length;
+        }
+        System.out.printf("%n%s level %d: %d rows, raw %d bytes, stored %d bytes (%.1f%%)%n",
+                codec, level, ROWS, rawBytes, storedBytes, 100.0 * storedBytes / rawBytes);
+    }
+
+    @Benchmark
+    public void encode(Blackhole bh) {
+        for (byte[] bytes : raw) {
+            bh.consume(codec.encode(bytes, level));
+        }
+    }
+
+    @Benchmark
+    public void decode(Blackhole bh) {
+        for (byte[] bytes : stored) {
+            bh.consume(codec.decode(bytes));
+        }
+    }
+}
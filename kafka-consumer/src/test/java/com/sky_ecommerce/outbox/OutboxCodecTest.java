@@ -0,0 +1,55 @@
+package com.sky_ecommerce.outbox;
+
+import com.sky_ecommerce.common.TestEnvelopes;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class OutboxCodecTest {
+
+    private final byte[] envelope = TestEnvelopes.codec("").encode("order.events", TestEnvelopes.orderCreated("o1"));
+
+    @Test
+    void deflateRoundTripsAndShrinksJsonEnvelopes() {
+        byte[] stored = OutboxCodec.DEFLATE.encode(envelope, Deflater.BEST_SPEED);
+
+        assertThat(stored.length).isLessThan(envelope.length);
+        assertThat(OutboxCodec.DEFLATE.decode(stored)).isEqualTo(envelope);
+    }
+
+    @Test
+    void deflateRoundTripsPayloadsLargerThanItsBuffers() {
+        byte[] large = new byte[100_000];
+        for (int i = 0; i < large.length; i++) {
+            large[i] = (byte) (i % 251);
+        }
+
+        assertThat(OutboxCodec.DEFLATE.decode(OutboxCodec.DEFLATE.encode(large, 6))).isEqualTo(large);
+    }
+
+    @Test
+    void noneStoresTheBytesAsTheyAre() {
+        assertThat(OutboxCodec.NONE.encode(envelope, 6)).isSameAs(envelope);
+        assertThat(OutboxCodec.NONE.decode(envelope)).isSameAs(envelope);
+    }
+
+    @Test
+    void rowsWithoutAMarkerAreUncompressed() {
+        assertThat(OutboxCodec.of(null)).isEqualTo(OutboxCodec.NONE);
+        assertThat(OutboxCodec.of("DEFLATE")).isEqualTo(OutboxCodec.DEFLATE);
+    }
+
+    @Test
+    void truncatedOrCorruptRowsFailInsteadOfPublishingGarbage() {
+        byte[] stored = OutboxCodec.DEFLATE.encode(envelope, 6);
+
+        assertThatThrownBy(() -> OutboxCodec.DEFLATE.decode(Arrays.copyOf(stored, stored.length / 2)))
+                .isInstanceOf(IllegalStateException.class).hasMessageContaining("Truncated");
+        assertThatThrownBy(() -> OutboxCodec.DEFLATE.decode(envelope))
+                .isInstanceOf(IllegalStateException.class).hasMessageContaining("Corrupt");
+    }
+}
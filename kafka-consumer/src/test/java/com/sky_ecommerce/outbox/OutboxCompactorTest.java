@@ -0,0 +1,136 @@
+package com.sky_ecommerce.outbox;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sky_ecommerce.common.TestEnvelopes;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.AutoConfigurationPackage;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class OutboxCompactorTest {
+
+    @SpringBootConfiguration
+    @AutoConfigurationPackage(basePackageClasses = OutboxEntity.class)
+    static class Config {
+    }
+
+    private static final Instant NOW = Instant.now();
+
+    @Autowired
+    private OutboxRepository repository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final ObjectMapper objectMapper = TestEnvelopes.objectMapper();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final OutboxCoordinator coordinator = mock(OutboxCoordinator.class);
+
+    @BeforeEach
+    void setUp() {
+        when(coordinator.isLeader()).thenReturn(true);
+        List<OutboxEntity> rows = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            rows.add(row("old-" + i, "SENT", NOW.minus(Duration.ofDays(8)), 100 + i));
+        }
+        rows.add(row("recent", "SENT", NOW.minus(Duration.ofHours(1)), 10));
+        rows.add(row("pending", "PENDING", null, 10));
+        repository.saveAll(rows);
+    }
+
+    @AfterEach
+    void cleanUp() {
+        repository.deleteAllInBatch();
+    }
+
+    @Test
+    void deletesExpiredSentRowsInChunksCountingBytesInTheDatabase() {
+        long deleted = compactor("").compactOnce();
+
+        assertThat(deleted).isEqualTo(5);
+        assertThat(repository.findAll()).extracting(OutboxEntity::getId).containsExactlyInAnyOrder("recent", "pending");
+        assertThat(meterRegistry.counter("outbox.compaction.bytes").count()).isEqualTo(100 + 101 + 102 + 103 + 104);
+        assertThat(meterRegistry.counter("outbox.compaction.rows").count()).isEqualTo(5);
+    }
+
+    @Test
+    void sizeQueryMeasuresEnvelopesWithoutLoadingThem() {
+        List<Object[]> sizes = repository.findSentSizesBefore(NOW.minus(Duration.ofDays(7)), 2);
+
+        assertThat(sizes).hasSize(2);
+        assertThat(sizes).allSatisfy(row -> assertThat(((Number) row[1]).intValue()).isBetween(100, 104));
+    }
+
+    @Test
+    void archivesEveryDeletedRow(@TempDir Path dir) throws IOException {
+        long deleted = compactor(dir.toString()).compactOnce();
+
+        assertThat(deleted).isEqualTo(5);
+        List<Path> files;
+        try (Stream<Path> list = Files.list(dir)) {
+            files = list.toList();
+        }
+        assertThat(files).singleElement().asString().endsWith(".jsonl.gz");
+        List<JsonNode> lines = new ArrayList<>();
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(files.get(0))), StandardCharsets.UTF_8))) {
+            for (String line; (line = in.readLine()) != null; ) {
+                lines.add(objectMapper.readTree(line));
+            }
+        }
+        assertThat(lines).extracting(l -> l.get("id").asText())
+                .containsExactlyInAnyOrder("old-0", "old-1", "old-2", "old-3", "old-4");
+        assertThat(lines.get(0).get("envelope").binaryValue()).hasSizeBetween(100, 104);
+        assertThat(meterRegistry.counter("outbox.compaction.archived").count()).isEqualTo(5);
+    }
+
+    private OutboxCompactor compactor(String archiveDir) {
+        return new OutboxCompactor(repository, objectMapper, transactionManager, meterRegistry, coordinator,
+                true, Duration.ofDays(7), 2, archiveDir);
+    }
+
+    private static OutboxEntity row(String id, String status, Instant sentAt, int size) {
+        OutboxEntity e = new OutboxEntity();
+        e.setId(id);
+        e.setTopic("order.events");
+        e.setKey("k-" + id);
+        e.setEnvelope(new byte[size]);
+        e.setCodec(OutboxCodec.NONE.name());
+        e.setAttempts(0);
+        e.setCreatedAt(NOW.minus(Duration.ofDays(9)));
+        e.setSentAt(sentAt);
+        e.setStatus(status);
+        return e;
+    }
+}
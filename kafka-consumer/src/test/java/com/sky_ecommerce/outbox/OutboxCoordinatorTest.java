@@ -0,0 +1,161 @@
+package com.sky_ecommerce.outbox;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class OutboxCoordinatorTest {
+
+    private final OutboxRelayNodeRepository nodes = mock(OutboxRelayNodeRepository.class);
+    private final OutboxRelayLeaseRepository leases = mock(OutboxRelayLeaseRepository.class);
+    private final OutboxRelaySignal relaySignal = mock(OutboxRelaySignal.class);
+    private OutboxCoordinator coordinator;
+
+    @BeforeEach
+    void setUp() {
+        when(nodes.existsById(anyString())).thenReturn(true);
+        when(leases.existsById(anyString())).thenReturn(true);
+        coordinator = new OutboxCoordinator(nodes, leases, mock(PlatformTransactionManager.class), relaySignal,
+                new OutboxNode("b"), true, 6000, 5000, 2000, 30000);
+    }
+
+    @Test
+    void bucketsAreStableAndInRange() {
+        assertThat(OutboxCoordinator.bucketOf("order-1")).isEqualTo(OutboxCoordinator.bucketOf("order-1"));
+        for (int i = 0; i < 10_000; i++) {
+            assertThat(OutboxCoordinator.bucketOf("k" + i)).isBetween(0, OutboxCoordinator.BUCKETS - 1);
+        }
+    }
+
+    @Test
+    void leaderSplitsBucketsOverLiveNodesWithTargetedUpdates() {
+        Instant now = Instant.now();
+        OutboxRelayNode a = node("a", now, 0, 0);
+        OutboxRelayNode b = node("b", now, 0, 0);
+        OutboxRelayNode c = node("c", now, 0, 0);
+        OutboxRelayNode dead = node("d", now.minusSeconds(60), 0, 512);
+        when(leases.tryAcquire(eq("outbox-relay"), eq("b"), any(), any())).thenReturn(1);
+        when(nodes.findAllByOrderByNodeIdAsc()).thenReturn(List.of(a, b, c, dead));
+        when(nodes.findById("b")).thenReturn(Optional.of(node("b", now, 341, 682)));
+
+        coordinator.heartbeat();
+
+        assertThat(coordinator.isLeader()).isTrue();
+        verify(nodes).assign("a", 0, 341);
+        verify(nodes).assign("b", 341, 682);
+        verify(nodes).assign("c", 682, 1024);
+        verify(nodes).assign("d", 0, 0);
+        // other nodes' rows (and their heartbeats) are never written back as whole entities
+        verify(nodes, never()).save(any());
+        assertThat(a.getBucketFrom()).isZero();
+        // the whole range is new to b, so it claims nothing until the handover is over
+        assertThat(coordinator.range()).containsExactly(0, 0);
+        verify(relaySignal, never()).wakeUp();
+    }
+
+    @Test
+    void movedBucketsBecomeClaimableOnceTheHandoverIsOver() {
+        OutboxCoordinator noWait = new OutboxCoordinator(nodes, leases, mock(PlatformTransactionManager.class),
+                relaySignal, new OutboxNode("b"), true, 6000, 5000, 0, 0);
+        when(nodes.findById("b")).thenReturn(Optional.of(node("b", Instant.now(), 341, 682)));
+
+        noWait.heartbeat();
+
+        assertThat(noWait.range()).containsExactly(341, 682);
+        verify(relaySignal).wakeUp();
+    }
+
+    @Test
+    void growingRangeKeepsClaimingTheBucketsItAlreadyHadDuringTheHandover() throws Exception {
+        Instant now = Instant.now();
+        OutboxCoordinator shortHandover = new OutboxCoordinator(nodes, leases, mock(PlatformTransactionManager.class),
+                relaySignal, new OutboxNode("b"), true, 6000, 5000, 0, 200);
+        when(nodes.findById("b")).thenReturn(Optional.of(node("b", now, 512, 1024)));
+        shortHandover.heartbeat();
+        Thread.sleep(250);
+        shortHandover.heartbeat();
+        assertThat(shortHandover.range()).containsExactly(512, 1024);
+
+        // node a died: b's range grows to everything, but [0, 512) may still be leased to a
+        when(nodes.findById("b")).thenReturn(Optional.of(node("b", now, 0, 1024)));
+        shortHandover.heartbeat();
+        assertThat(shortHandover.range()).containsExactly(512, 1024);
+
+        Thread.sleep(250);
+        shortHandover.heartbeat();
+        assertThat(shortHandover.range()).containsExactly(0, 1024);
+    }
+
+    @Test
+    void shrinkingRangeAppliesAtOnce() throws Exception {
+        Instant now = Instant.now();
+        OutboxCoordinator shortHandover = new OutboxCoordinator(nodes, leases, mock(PlatformTransactionManager.class),
+                relaySignal, new OutboxNode("b"), true, 6000, 5000, 0, 200);
+        when(nodes.findById("b")).thenReturn(Optional.of(node("b", now, 0, 1024)));
+        shortHandover.heartbeat();
+        Thread.sleep(250);
+        shortHandover.heartbeat();
+
+        when(nodes.findById("b")).thenReturn(Optional.of(node("b", now, 0, 512)));
+        shortHandover.heartbeat();
+
+        assertThat(shortHandover.range()).containsExactly(0, 512);
+    }
+
+    @Test
+    void unchangedRangesAreNotRewritten() {
+        Instant now = Instant.now();
+        when(leases.tryAcquire(anyString(), anyString(), any(), any())).thenReturn(1);
+        when(nodes.findAllByOrderByNodeIdAsc()).thenReturn(List.of(node("a", now, 0, 512), node("b", now, 512, 1024)));
+        when(nodes.findById("b")).thenReturn(Optional.empty());
+
+        coordinator.heartbeat();
+
+        verify(nodes, never()).assign(anyString(), anyInt(), anyInt());
+    }
+
+    @Test
+    void failedHeartbeatDropsLeadership() {
+        when(leases.tryAcquire(anyString(), anyString(), any(), any())).thenReturn(1);
+        when(nodes.findById("b")).thenReturn(Optional.empty());
+        coordinator.heartbeat();
+        assertThat(coordinator.isLeader()).isTrue();
+
+        when(nodes.heartbeat(anyString(), any())).thenThrow(new IllegalStateException("database down"));
+        coordinator.heartbeat();
+
+        assertThat(coordinator.isLeader()).isFalse();
+    }
+
+    @Test
+    void disabledClusterOwnsEverythingAsLeader() {
+        OutboxCoordinator single = new OutboxCoordinator(nodes, leases, mock(PlatformTransactionManager.class),
+                relaySignal, new OutboxNode("solo"), false, 6000, 5000, 2000, 30000);
+
+        assertThat(single.isLeader()).isTrue();
+        assertThat(single.range()).containsExactly(0, OutboxCoordinator.BUCKETS);
+    }
+
+    private static OutboxRelayNode node(String id, Instant heartbeatAt, int from, int to) {
+        OutboxRelayNode n = new OutboxRelayNode();
+        n.setNodeId(id);
+        n.setHeartbeatAt(heartbeatAt);
+        n.setBucketFrom(from);
+        n.setBucketTo(to);
+        return n;
+    }
+}
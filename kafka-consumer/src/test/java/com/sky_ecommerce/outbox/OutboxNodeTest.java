@@ -0,0 +1,26 @@
+package com.sky_ecommerce.outbox;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class OutboxNodeTest {
+
+    @Test
+    void configuredIdIsStableAcrossInstances() {
+        assertThat(new OutboxNode("relay-0").getStableId()).isEqualTo("relay-0");
+        assertThat(new OutboxNode("relay-0").getId()).isEqualTo(new OutboxNode("relay-0").getId());
+    }
+
+    @Test
+    void generatedIdDiffersPerBootAndCannotBackATransactionalId() {
+        OutboxNode first = new OutboxNode("");
+        OutboxNode second = new OutboxNode("");
+
+        assertThat(first.getId()).isNotEqualTo(second.getId());
+        assertThatThrownBy(first::getStableId)
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("outbox.relay.node-id");
+    }
+}
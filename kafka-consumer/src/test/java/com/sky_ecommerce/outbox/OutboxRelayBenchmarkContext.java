@@ -0,0 +1,123 @@
+package com.sky_ecommerce.outbox;
+
+import ch.qos.logback.classic.Level;
+import com.sky_ecommerce.common.EnvelopeCodec;
+import com.sky_ecommerce.common.TestEnvelopes;
+import com.sky_ecommerce.config.KafkaEcommerceConfig;
+import com.sky_ecommerce.config.OutboxExecutorConfig;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.AutoConfigurationPackage;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.data.jpa.JpaRepositoriesAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.JdbcTemplateAutoConfiguration;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration;
+import org.springframework.boot.autoconfigure.task.TaskSchedulingAutoConfiguration;
+import org.springframework.boot.autoconfigure.transaction.TransactionAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.kafka.test.EmbeddedKafkaKraftBroker;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Outbox relay as the application wires it (KafkaEcommerceConfig producers, OutboxExecutorConfig pools,
+ * the relay loop) on in-memory H2 and a single-node embedded broker, with clustering and LISTEN/NOTIFY off.
+ */
+final class OutboxRelayBenchmarkContext implements AutoCloseable {
+
+    static final String TOPIC = "order.events";
+
+    @SpringBootConfiguration
+    @ImportAutoConfiguration({DataSourceAutoConfiguration.class, HibernateJpaAutoConfiguration.class,
+            JpaRepositoriesAutoConfiguration.class, TransactionAutoConfiguration.class,
+            JdbcTemplateAutoConfiguration.class, TaskSchedulingAutoConfiguration.class})
+    @AutoConfigurationPackage(basePackageClasses = OutboxEntity.class)
+    @Import({KafkaEcommerceConfig.class, OutboxExecutorConfig.class, OutboxService.class, OutboxScheduler.class,
+            OutboxRelaySignal.class, OutboxCoordinator.class, OutboxBatchSizer.class, OutboxRetryPolicy.class,
+            OutboxMetrics.class, OutboxNode.class})
+    static class Config {
+
+        @Bean
+        EnvelopeCodec envelopeCodec() {
+            return TestEnvelopes.codec("");
+        }
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+
+    private final EmbeddedKafkaKraftBroker broker;
+    private final ConfigurableApplicationContext context;
+    private int appends;
+
+    OutboxRelayBenchmarkContext(String... properties) {
+        // logback logs everything at DEBUG until Spring Boot configures it; keep the broker's startup quiet
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(Level.WARN);
+        broker = new EmbeddedKafkaKraftBroker(1, 3, TOPIC);
+        broker.brokerProperties(Map.of("transaction.state.log.replication.factor", "1",
+                "transaction.state.log.min.isr", "1"));
+        broker.afterPropertiesSet();
+        // command-line arguments, so they override application.yml
+        List<String> args = new ArrayList<>(List.of(
+                "spring.kafka.bootstrap-servers=" + broker.getBrokersAsString(),
+                // H2 reuses a query's previous result unless the table changed since it ran, and it misses changes
+                // committed by other sessions in between; pending() polls while the relay commits, so it must re-run
+                "spring.datasource.url=jdbc:h2:mem:outbox-benchmark;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;"
+                        + "DEFAULT_NULL_ORDERING=HIGH;DB_CLOSE_DELAY=-1;OPTIMIZE_REUSE_RESULTS=FALSE",
+                "outbox.cluster.enabled=false",
+                "outbox.relay.notify.enabled=false",
+                "outbox.relay.node-id=benchmark",
+                "logging.level.com.sky_ecommerce=INFO",
+                "logging.level.org.apache.kafka=WARN",
+                "logging.level.org.springframework.kafka=WARN",
+                "logging.level.kafka=WARN"));
+        args.addAll(List.of(properties));
+        context = new SpringApplicationBuilder(Config.class)
+                .web(WebApplicationType.NONE)
+                .profiles("h2")
+                .run(args.stream().map(arg -> "--" + arg).toArray(String[]::new));
+    }
+
+    <T> T bean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    /**
+     * Appends OrderCreated events for {@code keys} new orders, round robin, in one transaction so a backlog builds
+     * quickly. Orders are never reused across calls: sent rows piling up under one key would slow every claim.
+     */
+    void append(int rows, int keys) {
+        OutboxService outbox = bean(OutboxService.class);
+        String prefix = "order-" + appends++ + "-";
+        new TransactionTemplate(bean(PlatformTransactionManager.class)).executeWithoutResult(status -> {
+            for (int i = 0; i < rows; i++) {
+                String orderId = prefix + (i % keys);
+                outbox.append(TOPIC, orderId, TestEnvelopes.orderCreated(orderId));
+            }
+        });
+    }
+
+    long pending() {
+        return bean(OutboxRepository.class).countByStatus("PENDING");
+    }
+
+    @Override
+    public void close() {
+        context.close();
+        broker.destroy();
+    }
+}
@@ -0,0 +1,193 @@
+package com.sky_ecommerce.outbox;
+
+import com.sky_ecommerce.common.EnvelopeCodec;
+import com.sky_ecommerce.common.EventEnvelope;
+import com.sky_ecommerce.common.EventHeaders;
+import com.sky_ecommerce.common.TestEnvelopes;
+import com.sky_ecommerce.config.KafkaEcommerceConfig;
+import com.sky_ecommerce.config.OutboxExecutorConfig;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.AutoConfigurationPackage;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.StreamSupport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Outbox append and relay against H2 and an embedded broker: rows are claimed, published through the
+ * application's producer wiring and acknowledged, and consumers read exactly the bytes the codec wrote.
+ * The transactional template is created too (with a fixed node id); tests opt into it per service.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@TestPropertySource(properties = "outbox.relay.transactional=true")
+@EmbeddedKafka(partitions = 3, topics = "order.events", bootstrapServersProperty = "spring.kafka.bootstrap-servers",
+        brokerProperties = {"transaction.state.log.replication.factor=1", "transaction.state.log.min.isr=1"})
+class OutboxRelayIT {
+
+    @SpringBootConfiguration
+    @AutoConfigurationPackage(basePackageClasses = OutboxEntity.class)
+    @Import(KafkaEcommerceConfig.class)
+    static class Config {
+
+        @Bean
+        EnvelopeCodec envelopeCodec() {
+            return TestEnvelopes.codec("");
+        }
+
+        @Bean
+        OutboxNode outboxNode() {
+            return new OutboxNode("relay-it");
+        }
+    }
+
+    @Autowired
+    private OutboxRepository repository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private EnvelopeCodec envelopeCodec;
+    @Autowired
+    @Qualifier("ecommerceRawKafkaTemplate")
+    private KafkaTemplate<String, byte[]> kafkaTemplate;
+    @Autowired
+    @Qualifier("outboxTransactionalKafkaTemplate")
+    private KafkaTemplate<String, byte[]> transactionalKafkaTemplate;
+    @Autowired
+    private EmbeddedKafkaBroker broker;
+
+    private final OutboxExecutorConfig executors = new OutboxExecutorConfig();
+    private final ThreadPoolTaskExecutor workerPool = executors.outboxRelayExecutor(2);
+    private final ThreadPoolTaskExecutor continuationPool = executors.outboxContinuationExecutor(2);
+    private Consumer<String, byte[]> consumer;
+
+    @BeforeEach
+    void setUp() {
+        workerPool.initialize();
+        continuationPool.initialize();
+        Map<String, Object> props = KafkaTestUtils.consumerProps("outbox-relay-it", "false", broker);
+        props.put(ConsumerConfig.ISOLATION_LEVEL_CONFIG, "read_committed");
+        consumer = new DefaultKafkaConsumerFactory<>(props, new StringDeserializer(), new ByteArrayDeserializer())
+                .createConsumer();
+        broker.consumeFromAnEmbeddedTopic(consumer, "order.events");
+        // the broker is shared by the tests: only read what this test publishes
+        consumer.seekToEnd(consumer.assignment());
+        consumer.assignment().forEach(consumer::position);
+    }
+
+    @AfterEach
+    void tearDown() {
+        consumer.close();
+        workerPool.shutdown();
+        continuationPool.shutdown();
+        repository.deleteAllInBatch();
+    }
+
+    @Test
+    void appendedRowsArePublishedAsTheirWireBytesInPerKeyOrderAndMarkedSent() {
+        OutboxService service = service(null);
+        EventEnvelope<?> o1Created = TestEnvelopes.orderCreated("o1");
+        EventEnvelope<?> o1Paid = TestEnvelopes.orderPaid("o1");
+        EventEnvelope<?> o2Created = TestEnvelopes.orderCreated("o2");
+        service.append("order.events", "o1", o1Created);
+        service.append("order.events", "o1", o1Paid);
+        service.append("order.events", "o2", o2Created);
+
+        assertThat(service.relayBatch()).isEqualTo(3);
+
+        List<ConsumerRecord<String, byte[]>> records = poll(3);
+        assertThat(records).extracting(ConsumerRecord::key).containsExactlyInAnyOrder("o1", "o1", "o2");
+        assertThat(records.stream().filter(r -> "o1".equals(r.key()))
+                .map(r -> EventHeaders.read(r.headers(), EventHeaders.EVENT_TYPE)).toList())
+                .containsExactly("OrderCreated", "OrderPaid");
+        for (EventEnvelope<?> envelope : List.of(o1Created, o1Paid, o2Created)) {
+            assertThat(records).anySatisfy(r -> assertThat(r.value())
+                    .isEqualTo(envelopeCodec.encode("order.events", envelope)));
+        }
+        assertThat(repository.countByStatus("SENT")).isEqualTo(3);
+        assertThat(service.relayBatch()).isZero();
+    }
+
+    @Test
+    void transactionalRelayCommitsEachLaneBeforeMarkingItsRowsSent() {
+        OutboxService service = service(transactionalKafkaTemplate);
+        service.append("order.events", "o1", TestEnvelopes.orderCreated("o1"));
+        service.append("order.events", "o1", TestEnvelopes.orderPaid("o1"));
+        service.append("order.events", "o2", TestEnvelopes.orderCreated("o2"));
+
+        assertThat(service.relayBatch()).isEqualTo(3);
+
+        assertThat(poll(3)).extracting(ConsumerRecord::key).containsExactlyInAnyOrder("o1", "o1", "o2");
+        assertThat(repository.countByStatus("SENT")).isEqualTo(3);
+    }
+
+    @Test
+    void abortedLaneIsInvisibleToReadCommittedConsumersAndRetriedAsAWhole() {
+        OutboxService service = service(transactionalKafkaTemplate);
+        service.append("order.events", "o1", TestEnvelopes.orderCreated("o1"));
+        // same key, so same lane and transaction; the broker rejects the topic name and the lane aborts
+        service.append("not a topic", "o1", TestEnvelopes.orderPaid("o1"));
+
+        assertThat(service.relayBatch()).isZero();
+
+        assertThat(consumer.poll(Duration.ofSeconds(3)).isEmpty()).isTrue();
+        List<OutboxEntity> rows = repository.findAll();
+        assertThat(rows).extracting(OutboxEntity::getStatus).containsOnly("PENDING");
+        assertThat(rows).extracting(OutboxEntity::getAttempts).containsOnly(1);
+    }
+
+    private List<ConsumerRecord<String, byte[]>> poll(int expected) {
+        List<ConsumerRecord<String, byte[]>> records = StreamSupport.stream(
+                KafkaTestUtils.getRecords(consumer, Duration.ofSeconds(10), expected).spliterator(), false).toList();
+        assertThat(records).hasSize(expected);
+        return records;
+    }
+
+    @SuppressWarnings("unchecked")
+    private OutboxService service(KafkaTemplate<String, byte[]> transactionalTemplate) {
+        ObjectProvider<KafkaTemplate<String, byte[]>> transactional = mock(ObjectProvider.class);
+        when(transactional.getIfAvailable()).thenReturn(transactionalTemplate);
+        OutboxCoordinator coordinator = mock(OutboxCoordinator.class);
+        when(coordinator.range()).thenReturn(new int[]{0, OutboxCoordinator.BUCKETS});
+        OutboxBatchSizer batchSizer = mock(OutboxBatchSizer.class);
+        when(batchSizer.current()).thenReturn(100);
+        // compress every row, so the relay has to restore the wire bytes before publishing
+        return new OutboxService(repository, envelopeCodec, kafkaTemplate, transactional, transactionManager,
+                mock(OutboxRelaySignal.class), new OutboxRetryPolicy(1000, 300000, 2.0, 10), batchSizer,
+                mock(OutboxMetrics.class), coordinator, 2, 30000, OutboxCodec.DEFLATE, 1, 0,
+                new OutboxNode("relay-it"), workerPool, continuationPool);
+    }
+}
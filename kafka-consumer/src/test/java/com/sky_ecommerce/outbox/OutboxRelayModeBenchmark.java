@@ -0,0 +1,71 @@
+package com.sky_ecommerce.outbox;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Relay cost per row with and without Kafka transactions (outbox.relay.transactional). Each invocation
+ * drains 1000 freshly appended rows (100 orders) through relayBatch; the relay loop is stopped so only
+ * claiming, publishing and acknowledging are measured.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OutboxRelayModeBenchmark {
+
+    private static final int ROWS = 1000;
+
+    @Param({"false", "true"})
+    public boolean transactional;
+
+    private OutboxRelayBenchmarkContext bench;
+    private OutboxService outbox;
+
+    @Setup(Level.Trial)
+    public void start() {
+        bench = new OutboxRelayBenchmarkContext("outbox.relay.transactional=" + transactional);
+        bench.bean(OutboxScheduler.class).stop();
+        outbox = bench.bean(OutboxService.class);
+    }
+
+    @Setup(Level.Invocation)
+    public void appendRows() {
+        bench.append(ROWS, 100);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public int relay() {
+        int sent = 0;
+        int batch;
+        while ((batch = outbox.relayBatch()) > 0) {
+            sent += batch;
+        }
+        if (sent != ROWS) {
+            throw new IllegalStateException("relayed " + sent + " of " + ROWS + " rows");
+        }
+        return sent;
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        bench.close();
+    }
+}
@@ -0,0 +1,81 @@
+package com.sky_ecommerce.outbox;
+
+import com.sky_ecommerce.common.EnvelopeCodec;
+import com.sky_ecommerce.common.EventEnvelope;
+import com.sky_ecommerce.common.EventHeaders;
+import com.sky_ecommerce.common.TestEnvelopes;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Relay-side cost of turning 10k stored outbox rows into producer records. {@code reparse} is the former
+ * path: parse the stored JSON into a generic EventEnvelope, then serialize it again for the producer.
+ * {@code rawBytes} is the current one: publish the stored wire bytes. Run with {@code -prof gc} for the
+ * allocation side (gc.alloc.rate.norm is bytes per 10k rows).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OutboxRelayPayloadBenchmark {
+
+    private static final int ROWS = 10_000;
+
+    private EnvelopeCodec codec;
+    private List<OutboxEntity> rows;
+
+    @Setup
+    public void setUp() {
+        codec = TestEnvelopes.codec("");
+        rows = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            EventEnvelope<?> envelope = TestEnvelopes.orderCreated("order-" + i);
+            OutboxEntity e = new OutboxEntity();
+            e.setTopic("order.events");
+            e.setKey(envelope.getSubjectId());
+            e.setEnvelope(codec.encode(e.getTopic(), envelope));
+            e.setCodec(OutboxCodec.NONE.name());
+            e.setEventType(envelope.getEventType());
+            e.setSchemaVersion(envelope.getSchemaVersion());
+            e.setCorrelationId(envelope.getCorrelationId());
+            rows.add(e);
+        }
+    }
+
+    @Benchmark
+    public void reparse(Blackhole bh) {
+        for (OutboxEntity e : rows) {
+            EventEnvelope<?> envelope = codec.decode(e.getEnvelope(), EventEnvelope.class);
+            bh.consume(record(e, codec.encode(e.getTopic(), envelope)));
+        }
+    }
+
+    @Benchmark
+    public void rawBytes(Blackhole bh) {
+        for (OutboxEntity e : rows) {
+            bh.consume(record(e, OutboxCodec.of(e.getCodec()).decode(e.getEnvelope())));
+        }
+    }
+
+    private static ProducerRecord<String, byte[]> record(OutboxEntity e, byte[] value) {
+        ProducerRecord<String, byte[]> record = new ProducerRecord<>(e.getTopic(), e.getKey(), value);
+        EventHeaders.write(record.headers(), e.getEventType(), e.getSchemaVersion(), e.getCorrelationId());
+        return record;
+    }
+}
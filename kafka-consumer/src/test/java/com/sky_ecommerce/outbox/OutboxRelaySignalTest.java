@@ -0,0 +1,82 @@
+package com.sky_ecommerce.outbox;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class OutboxRelaySignalTest {
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+
+    @AfterEach
+    void clearSynchronization() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void aTransactionAppendingManyRowsNotifiesOnceBeforeCommitAndWakesOnceAfter() throws Exception {
+        OutboxRelaySignal signal = new OutboxRelaySignal(postgres(), jdbcTemplate, true);
+        TransactionSynchronizationManager.initSynchronization();
+
+        for (int i = 0; i < 50; i++) {
+            signal.appended();
+        }
+
+        verify(jdbcTemplate, never()).execute("NOTIFY " + OutboxRelaySignal.CHANNEL);
+        assertThat(TransactionSynchronizationManager.getSynchronizations()).hasSize(1);
+        assertThat(signal.await(0)).isFalse();
+
+        TransactionSynchronizationUtils.triggerBeforeCommit(false);
+        verify(jdbcTemplate, times(1)).execute("NOTIFY " + OutboxRelaySignal.CHANNEL);
+        TransactionSynchronizationUtils.triggerAfterCommit();
+        assertThat(signal.await(0)).isTrue();
+    }
+
+    @Test
+    void appendOutsideATransactionNotifiesAndWakesImmediately() throws Exception {
+        OutboxRelaySignal signal = new OutboxRelaySignal(postgres(), jdbcTemplate, true);
+
+        signal.appended();
+
+        verify(jdbcTemplate).execute("NOTIFY " + OutboxRelaySignal.CHANNEL);
+        assertThat(signal.await(0)).isTrue();
+    }
+
+    @Test
+    void notifyIsSkippedWhenCrossNodeWakeUpsAreOff() throws Exception {
+        OutboxRelaySignal signal = new OutboxRelaySignal(postgres(), jdbcTemplate, false);
+        TransactionSynchronizationManager.initSynchronization();
+
+        signal.appended();
+        TransactionSynchronizationUtils.triggerBeforeCommit(false);
+        TransactionSynchronizationUtils.triggerAfterCommit();
+
+        verify(jdbcTemplate, never()).execute("NOTIFY " + OutboxRelaySignal.CHANNEL);
+        assertThat(signal.await(0)).isTrue();
+    }
+
+    private static DataSource postgres() throws Exception {
+        DataSource dataSource = mock(DataSource.class);
+        Connection connection = mock(Connection.class);
+        DatabaseMetaData metaData = mock(DatabaseMetaData.class);
+        when(dataSource.getConnection()).thenReturn(connection);
+        when(connection.getMetaData()).thenReturn(metaData);
+        when(metaData.getDatabaseProductName()).thenReturn("PostgreSQL");
+        return dataSource;
+    }
+}
@@ -0,0 +1,78 @@
+package com.sky_ecommerce.outbox;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Relay throughput (rows/s) with the relay loop running on its own scheduler and worker pool, as in the
+ * application. Each invocation appends a backlog of 1000 rows (500 orders) with the loop stopped, then starts
+ * it and returns once every row is sent, for each worker count with and without Kafka transactions.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OutboxRelayThroughputBenchmark {
+
+    private static final int ROWS = 1000;
+    private static final long TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(60);
+
+    @Param({"1", "4"})
+    public int workers;
+
+    @Param({"false", "true"})
+    public boolean transactional;
+
+    private OutboxRelayBenchmarkContext bench;
+    private OutboxScheduler scheduler;
+
+    @Setup(Level.Trial)
+    public void start() {
+        bench = new OutboxRelayBenchmarkContext("outbox.relay.workers=" + workers,
+                "outbox.relay.transactional=" + transactional);
+        scheduler = bench.bean(OutboxScheduler.class);
+    }
+
+    @Setup(Level.Invocation)
+    public void appendBacklog() {
+        scheduler.stop();
+        bench.append(ROWS, ROWS / 2);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public long drain() {
+        scheduler.start();
+        long deadline = System.nanoTime() + TIMEOUT_NANOS;
+        long pending;
+        while ((pending = bench.pending()) > 0) {
+            if (System.nanoTime() > deadline) {
+                throw new IllegalStateException(pending + " rows still pending after 60s");
+            }
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        return pending;
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        bench.close();
+    }
+}
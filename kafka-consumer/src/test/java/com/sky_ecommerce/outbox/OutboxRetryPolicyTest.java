@@ -0,0 +1,46 @@
+package com.sky_ecommerce.outbox;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OutboxRetryPolicyTest {
+
+    private static final Instant NOW = Instant.parse("2026-01-01T00:00:00Z");
+
+    private final OutboxRetryPolicy policy = new OutboxRetryPolicy(1000, 60_000, 2.0, 10);
+
+    @Test
+    void delayIsJitteredBetweenHalfAndAllOfTheExponentialCeiling() {
+        for (int attempts = 0; attempts < 5; attempts++) {
+            long ceiling = 1000L << attempts;
+            for (int i = 0; i < 200; i++) {
+                long delay = Duration.between(NOW, policy.nextAttemptAt(attempts, NOW)).toMillis();
+                assertThat(delay).isBetween(ceiling / 2, ceiling);
+            }
+        }
+    }
+
+    @Test
+    void delayIsCappedAtMax() {
+        for (int i = 0; i < 200; i++) {
+            long delay = Duration.between(NOW, policy.nextAttemptAt(30, NOW)).toMillis();
+            assertThat(delay).isBetween(30_000L, 60_000L);
+        }
+    }
+
+    @Test
+    void rowsFailingTogetherDoNotAllComeDueAtOnce() {
+        long distinct = IntStream.range(0, 50)
+                .mapToObj(i -> policy.nextAttemptAt(3, NOW))
+                .distinct()
+                .count();
+
+        assertThat(distinct).isGreaterThan(1);
+        assertThat(policy.getMaxAttempts()).isEqualTo(10);
+    }
+}
@@ -0,0 +1,194 @@
+package com.sky_ecommerce.outbox;
+
+import com.sky_ecommerce.common.EnvelopeCodec;
+import com.sky_ecommerce.common.EventEnvelope;
+import com.sky_ecommerce.common.EventHeaders;
+import com.sky_ecommerce.common.TestEnvelopes;
+import com.sky_ecommerce.config.OutboxExecutorConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class OutboxServiceRelayTest {
+
+    private static final String PRODUCER_THREAD = "kafka-producer-network-thread | test";
+
+    private final OutboxExecutorConfig executors = new OutboxExecutorConfig();
+    private final ThreadPoolTaskExecutor workerPool = executors.outboxRelayExecutor(1);
+    private final ThreadPoolTaskExecutor continuationPool = executors.outboxContinuationExecutor(1);
+    // completes acks in bursts from one thread, like the producer's I/O thread does
+    private final ScheduledExecutorService producerThread =
+            Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, PRODUCER_THREAD));
+
+    private final OutboxRepository repository = mock(OutboxRepository.class);
+    @SuppressWarnings("unchecked")
+    private final KafkaTemplate<String, byte[]> kafkaTemplate = mock(KafkaTemplate.class);
+
+    @AfterEach
+    void shutdown() {
+        producerThread.shutdownNow();
+        workerPool.shutdown();
+        continuationPool.shutdown();
+    }
+
+    @Test
+    void sameKeyContinuationsNeverRunOnTheProducerThreadWhenThePoolIsSaturated() {
+        workerPool.initialize();
+        continuationPool.initialize();
+
+        // one lane, 10 keys x 3 rows: every ack burst releases 10 continuations onto a 1-thread pool
+        List<OutboxEntity> rows = new ArrayList<>();
+        for (int seq = 0; seq < 3; seq++) {
+            for (int k = 0; k < 10; k++) {
+                rows.add(row("k" + k + "-" + seq, "k" + k));
+            }
+        }
+        when(repository.findPending(any(), anyInt(), anyInt(), any())).thenReturn(rows);
+
+        Set<String> sendThreads = ConcurrentHashMap.newKeySet();
+        List<String> sendOrder = new ArrayList<>();
+        ConcurrentLinkedQueue<CompletableFuture<SendResult<String, byte[]>>> pending = new ConcurrentLinkedQueue<>();
+        when(kafkaTemplate.send(any(ProducerRecord.class))).thenAnswer(invocation -> {
+            ProducerRecord<String, byte[]> record = invocation.getArgument(0);
+            sendThreads.add(Thread.currentThread().getName());
+            synchronized (sendOrder) {
+                sendOrder.add(new String(record.value()));
+            }
+            // a slow send keeps the continuation pool busy so its queue fills up
+            Thread.sleep(5);
+            CompletableFuture<SendResult<String, byte[]>> ack = new CompletableFuture<>();
+            pending.add(ack);
+            return ack;
+        });
+        producerThread.scheduleWithFixedDelay(() -> {
+            CompletableFuture<SendResult<String, byte[]>> ack;
+            while ((ack = pending.poll()) != null) {
+                ack.complete(null);
+            }
+        }, 60, 60, TimeUnit.MILLISECONDS);
+
+        int sent = service().relayBatch();
+
+        assertThat(sent).isEqualTo(30);
+        assertThat(sendThreads).doesNotContain(PRODUCER_THREAD);
+        // each key's rows still go out in creation order
+        for (int k = 0; k < 10; k++) {
+            String prefix = "k" + k + "-";
+            assertThat(sendOrder.stream().filter(v -> v.startsWith(prefix)).toList())
+                    .containsExactly(prefix + 0, prefix + 1, prefix + 2);
+        }
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Collection<String>> ids = ArgumentCaptor.forClass(Collection.class);
+        verify(repository).markSent(ids.capture(), any());
+        assertThat(ids.getValue()).hasSize(30);
+        verify(repository, never()).release(any());
+    }
+
+    @Test
+    void continuationRejectedAtShutdownHoldsTheRestOfTheKey() {
+        workerPool.initialize();
+        // never initialized: every submission is rejected, as after shutdown
+        ThreadPoolTaskExecutor rejecting = executors.outboxContinuationExecutor(1);
+        List<OutboxEntity> rows = List.of(row("a-0", "a"), row("a-1", "a"));
+        when(repository.findPending(any(), anyInt(), anyInt(), any())).thenReturn(rows);
+        when(kafkaTemplate.send(any(ProducerRecord.class))).thenReturn(CompletableFuture.completedFuture(null));
+
+        int sent = service(rejecting).relayBatch();
+
+        assertThat(sent).isEqualTo(1);
+        verify(repository).release(List.of("a-1"));
+    }
+
+    @Test
+    void compressedRowsArePublishedAsTheOriginalWireBytes() {
+        workerPool.initialize();
+        continuationPool.initialize();
+        EnvelopeCodec envelopeCodec = TestEnvelopes.codec("");
+        // the OrderCreated envelope is under the default 256-byte minimum; lower it so the row is compressed
+        OutboxService service = service(continuationPool, envelopeCodec, OutboxCodec.DEFLATE, 64);
+        EventEnvelope<?> envelope = TestEnvelopes.orderCreated("o1");
+
+        service.append("order.events", "o1", envelope);
+
+        ArgumentCaptor<OutboxEntity> saved = ArgumentCaptor.forClass(OutboxEntity.class);
+        verify(repository).save(saved.capture());
+        OutboxEntity row = saved.getValue();
+        byte[] wire = envelopeCodec.encode("order.events", envelope);
+        assertThat(row.getCodec()).isEqualTo("DEFLATE");
+        assertThat(row.getEnvelope().length).isLessThan(wire.length);
+
+        when(repository.findPending(any(), anyInt(), anyInt(), any())).thenReturn(List.of(row));
+        ArgumentCaptor<ProducerRecord<String, byte[]>> sent = ArgumentCaptor.forClass(ProducerRecord.class);
+        when(kafkaTemplate.send(sent.capture())).thenReturn(CompletableFuture.completedFuture(null));
+
+        assertThat(service.relayBatch()).isEqualTo(1);
+        assertThat(sent.getValue().value()).isEqualTo(wire);
+        assertThat(EventHeaders.read(sent.getValue().headers(), EventHeaders.EVENT_TYPE)).isEqualTo("OrderCreated");
+    }
+
+    private OutboxService service() {
+        return service(continuationPool);
+    }
+
+    private OutboxService service(ThreadPoolTaskExecutor continuations) {
+        return service(continuations, mock(EnvelopeCodec.class), OutboxCodec.NONE, 256);
+    }
+
+    @SuppressWarnings("unchecked")
+    private OutboxService service(ThreadPoolTaskExecutor continuations, EnvelopeCodec envelopeCodec,
+                                  OutboxCodec codec, int compressionMinBytes) {
+        OutboxBatchSizer batchSizer = mock(OutboxBatchSizer.class);
+        when(batchSizer.current()).thenReturn(100);
+        OutboxCoordinator coordinator = mock(OutboxCoordinator.class);
+        when(coordinator.range()).thenReturn(new int[]{0, OutboxCoordinator.BUCKETS});
+        OutboxRetryPolicy retryPolicy = mock(OutboxRetryPolicy.class);
+        when(retryPolicy.nextAttemptAt(anyInt(), any())).thenReturn(Instant.now());
+        ObjectProvider<KafkaTemplate<String, byte[]>> noTransactions = mock(ObjectProvider.class);
+        return new OutboxService(repository, envelopeCodec, kafkaTemplate, noTransactions,
+                mock(PlatformTransactionManager.class), mock(OutboxRelaySignal.class), retryPolicy, batchSizer,
+                mock(OutboxMetrics.class), coordinator, 1, 30000, codec, 1, compressionMinBytes,
+                new OutboxNode("test-node"), workerPool, continuations);
+    }
+
+    private static OutboxEntity row(String id, String key) {
+        OutboxEntity e = new OutboxEntity();
+        e.setId(id);
+        e.setTopic("order.events");
+        e.setKey(key);
+        e.setEnvelope(id.getBytes());
+        e.setCodec(OutboxCodec.NONE.name());
+        e.setAttempts(0);
+        e.setCreatedAt(Instant.now());
+        e.setStatus("PENDING");
+        return e;
+    }
+}
@@ -0,0 +1,61 @@
+package com.sky_ecommerce.outbox;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class OutboxUpgradeScriptTest {
+
+    @Test
+    void eachDoBlockIsSentAsOneStatement() throws Exception {
+        // populated the way spring.sql.init runs it (separator from application.yml)
+        ResourceDatabasePopulator populator = new ResourceDatabasePopulator(new ClassPathResource("db/outbox-upgrade.sql"));
+        populator.setSeparator("@@");
+        Connection connection = mock(Connection.class);
+        Statement statement = mock(Statement.class);
+        when(connection.createStatement()).thenReturn(statement);
+
+        populator.populate(connection);
+
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        verify(statement, times(2)).execute(sql.capture());
+        assertThat(sql.getAllValues()).allSatisfy(block -> assertThat(block).startsWith("DO $$").contains("END $$"));
+        assertThat(sql.getAllValues().get(0)).contains("lo_unlink(envelope_json)", "DROP COLUMN envelope_json");
+        assertThat(sql.getAllValues().get(1)).contains("ADD COLUMN IF NOT EXISTS key_bucket", "SET key_bucket = h");
+    }
+
+    @Test
+    void keyBucketBackfillMatchesBucketOf() {
+        for (String key : List.of("", "order-1", "5f0c3a6e-8d1b-4c2a-9e7f-1a2b3c4d5e6f", "\u043A\u043B\u044E\u0447-42", "order-\uD83D\uDE80")) {
+            assertThat(backfilledBucket(key)).as(key).isEqualTo(OutboxCoordinator.bucketOf(key));
+        }
+        for (int i = 0; i < 10_000; i++) {
+            String key = "k" + i;
+            assertThat(backfilledBucket(key)).isEqualTo(OutboxCoordinator.bucketOf(key));
+        }
+    }
+
+    // The backfill loop from db/outbox-upgrade.sql, over code points as Postgres' ascii() returns them
+    private static int backfilledBucket(String key) {
+        int h = 0;
+        for (int c : key.codePoints().toArray()) {
+            if (c > 65535) {
+                h = (h * 31 + 55296 + ((c - 65536) >> 10)) % 1024;
+                c = 56320 + ((c - 65536) & 1023);
+            }
+            h = (h * 31 + c) % 1024;
+        }
+        return h;
+    }
+}